@@ -0,0 +1,90 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberImportDto;
+import study.querydsl.service.MemberIngestService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ * 외부 H2 서버 대신 벤치마크마다 독립된 in-memory H2 를 띄우고 rows 만큼 회원을 넣어둔다.
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    public static final int TEAM_COUNT = 10;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static BenchmarkContext start(String name, int rows, String... properties) {
+        return start(WebApplicationType.NONE, name, rows, properties);
+    }
+
+    /**
+     * 임의 포트로 내장 톰캣까지 띄운다. 포트는 {@link #getPort()}
+     */
+    public static BenchmarkContext startServer(String name, int rows, String... properties) {
+        List<String> serverProperties = new ArrayList<>(List.of(properties));
+        serverProperties.add("server.port=0");
+        return start(WebApplicationType.SERVLET, name, rows, serverProperties.toArray(String[]::new));
+    }
+
+    private static BenchmarkContext start(WebApplicationType type, String name, int rows, String... properties) {
+        List<String> defaults = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.properties.hibernate.format_sql=false",
+                "spring.jpa.properties.hibernate.use_sql_comments=false",
+                "logging.level.org.hibernate.SQL=warn",
+                "decorator.datasource.enabled=false"));
+        defaults.addAll(List.of(properties));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(type)
+                // properties(..) 는 기본값이라 application.yml 에 덮어써지므로 커맨드라인 인자로 넘긴다.
+                .run(defaults.stream().map(property -> "--" + property).toArray(String[]::new));
+        BenchmarkContext benchmarkContext = new BenchmarkContext(context);
+        benchmarkContext.seed(rows);
+        return benchmarkContext;
+    }
+
+    public static List<MemberImportDto> rows(String prefix, int rows) {
+        return IntStream.range(0, rows)
+                .mapToObj(i -> new MemberImportDto(prefix + i, i % 100, "team" + i % TEAM_COUNT))
+                .toList();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int getPort() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private void seed(int rows) {
+        getBean(MemberIngestService.class).ingest(rows("member", rows));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /v1/members 부하 테스트
+ * platform: 톰캣 기본 스레드 풀, virtual: 가상 스레드 + JDBC gate (JDK 21 필요)
+ * 두 모드 모두 톰캣 스레드 50, 커넥션 풀 10 으로 맞추고 클라이언트 200 스레드로 요청한다.
+ * Throughput 은 처리량, SampleTime 의 p0.99 가 p99 응답 시간이다.
+ *
+ * ./gradlew jmh -PjavaVersion=21 -Pjmh.includes=MemberControllerLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(200)
+public class MemberControllerLoadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"100000"})
+    public int rows;
+
+    private BenchmarkContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startServer("member-controller-" + mode, rows,
+                "spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                "querydsl.jdbc.gate.enabled=" + mode.equals("virtual"),
+                "server.tomcat.threads.max=50",
+                "spring.datasource.hikari.maximum-pool-size=10");
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + context.getPort()
+                        + "/v1/members?teamName=team1&ageGoe=20&ageLoe=60&page=10&size=20"))
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int searchMember1() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("status " + response.statusCode());
+        }
+        return response.body().length();
+    }
+}
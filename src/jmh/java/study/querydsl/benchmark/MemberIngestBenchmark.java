@@ -0,0 +1,80 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberImportDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberIngestService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티를 하나씩 persist 하는 기존 방식(JDBC batch 없음)과 MemberIngestService 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MemberIngestBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkContext perEntity;
+    private BenchmarkContext bulk;
+    private List<MemberImportDto> data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        perEntity = BenchmarkContext.start("ingest-per-entity", 0,
+                "spring.jpa.properties.hibernate.jdbc.batch_size=1",
+                "spring.jpa.properties.hibernate.order_inserts=false");
+        bulk = BenchmarkContext.start("ingest-bulk", 0);
+        data = BenchmarkContext.rows("ingest", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        perEntity.close();
+        bulk.close();
+    }
+
+    @Benchmark
+    public void persistEach() {
+        EntityManager em = perEntity.getBean(EntityManager.class);
+        new TransactionTemplate(perEntity.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            Map<String, Team> teams = new HashMap<>();
+            for (MemberImportDto row : data) {
+                Team team = teams.computeIfAbsent(row.getTeamName(), name -> {
+                    Team newTeam = new Team(name);
+                    em.persist(newTeam);
+                    return newTeam;
+                });
+                em.persist(new Member(row.getUsername(), row.getAge(), team));
+            }
+        });
+    }
+
+    @Benchmark
+    public long bulkIngest() {
+        return bulk.getBean(MemberIngestService.class).ingest(data);
+    }
+}
@@ -0,0 +1,60 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * querydsl.jdbc.gate.enabled=true 이면 dataSource 빈을 {@link JdbcConcurrencyGate} 로 감싼다.
+ * permits 를 지정하지 않으면 Hikari maximumPoolSize 를 사용한다.
+ * replica 라우팅이 켜져 있으면 primary 풀 크기가 기준이 된다.
+ * <p>
+ * querydsl.count.parallel.enabled 와 함께 켤 수 없다. 요청 스레드가 permit 을 쥔 채 count 작업을 기다리고
+ * count 작업은 다른 permit 을 기다리므로, 요청이 permits 만큼 몰리면 모두 acquire-timeout 까지 멈춘다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.jdbc.gate.enabled", havingValue = "true")
+public class JdbcConcurrencyGateConfig {
+
+    private static final String DATA_SOURCE_BEAN = "dataSource";
+    private static final int DEFAULT_PERMITS = 10;
+
+    @Bean
+    public static BeanPostProcessor jdbcConcurrencyGatePostProcessor(Environment environment) {
+        if (environment.getProperty("querydsl.count.parallel.enabled", Boolean.class, false)) {
+            throw new IllegalStateException(
+                    "querydsl.jdbc.gate.enabled cannot be combined with querydsl.count.parallel.enabled");
+        }
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!DATA_SOURCE_BEAN.equals(beanName) || !(bean instanceof DataSource dataSource)
+                        || bean instanceof JdbcConcurrencyGate) {
+                    return bean;
+                }
+                int permits = environment.getProperty("querydsl.jdbc.gate.permits", Integer.class, poolSize(dataSource));
+                Duration acquireTimeout = environment.getProperty("querydsl.jdbc.gate.acquire-timeout", Duration.class,
+                        Duration.ofSeconds(30));
+                return new JdbcConcurrencyGate(dataSource, permits, acquireTimeout);
+            }
+        };
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            // 풀 정보를 알 수 없으면 Hikari 기본값을 사용한다.
+        }
+        return DEFAULT_PERMITS;
+    }
+}
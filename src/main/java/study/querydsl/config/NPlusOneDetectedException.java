@@ -0,0 +1,11 @@
+package study.querydsl.config;
+
+/**
+ * querydsl.n-plus-one.mode=fail 일 때 같은 모양의 키 조회 select 가 반복되면 발생한다.
+ */
+public class NPlusOneDetectedException extends IllegalStateException {
+
+    public NPlusOneDetectedException(String scope, int count, String sql) {
+        super("N+1 detected in '" + scope + "': " + count + " selects of the same shape, sql=" + sql);
+    }
+}
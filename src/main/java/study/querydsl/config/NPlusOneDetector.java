@@ -0,0 +1,250 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * N+1 쿼리 감지기 (Hibernate StatementInspector)
+ * <p>
+ * 요청({@link NPlusOneRequestFilter}) 또는 트랜잭션 단위로 실행된 SQL 을 세고,
+ * "where 별칭.키컬럼=?" 로 끝나는 같은 모양의 select 가 threshold 번 반복되면 N+1 로 판단한다.
+ * 지연 로딩된 Member.team, Team.members 초기화가 이 모양이다. 키 컬럼은 id 또는 *_id 이름의 컬럼이다.
+ * 집계(count, min, max, sum, avg)와 select ... for update 는 엔티티 로딩이 아니므로 세지 않는다.
+ * <ul>
+ *     <li>OFF: 아무것도 하지 않는다.</li>
+ *     <li>WARN: 경고 로그와 querydsl.nplusone metric 을 남긴다. (기본값)</li>
+ *     <li>FAIL: {@link NPlusOneDetectedException} 을 던진다. 테스트용</li>
+ * </ul>
+ * 모드는 querydsl.n-plus-one.mode 로 정하고, {@link #open(String, Mode)} 로 연 범위는 그 범위에만 다른 모드를 쓴다.
+ * 범위는 중첩해서 열 수 있고, 안쪽 범위를 닫으면 바깥 범위가 다시 현재 범위가 된다.
+ * 의도적으로 id 를 모아 조회하는 코드(ex. BatchLoader)는 {@link #suppress()} 안에서 실행해 N+1 판단에서 뺀다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector implements StatementInspector {
+
+    public static final String N_PLUS_ONE_COUNTER = "querydsl.nplusone";
+    public static final String STATEMENTS_SUMMARY = "querydsl.statements";
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern KEY_LOOKUP = Pattern.compile(
+            "^select .+ where \\w+\\.(id|\\w+_id)=\\?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOT_ENTITY_LOAD = Pattern.compile(
+            "^select (?:(?! from ).)*\\b(count|min|max|sum|avg)\\(|\\bfor update\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLE = Pattern.compile(" from (\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private static final ThreadLocal<Scope> REQUEST_SCOPE = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> SUPPRESSED = ThreadLocal.withInitial(() -> 0);
+
+    public enum Mode {
+        OFF, WARN, FAIL
+    }
+
+    private final Mode mode;
+    private final int threshold;
+    private final MeterRegistry registry;
+
+    public NPlusOneDetector(@Value("${querydsl.n-plus-one.mode:warn}") Mode mode,
+                            @Value("${querydsl.n-plus-one.threshold:5}") int threshold,
+                            MeterRegistry registry) {
+        this.mode = mode;
+        this.threshold = threshold;
+        this.registry = registry;
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.OFF;
+    }
+
+    /**
+     * 현재 스레드에 감지 범위를 연다. 열려 있는 동안에는 트랜잭션 범위보다 우선한다.
+     */
+    public Scope open(String name) {
+        return open(name, mode);
+    }
+
+    /**
+     * 설정과 다른 모드로 감지 범위를 연다. (ex. 테스트에서 특정 구간만 FAIL)
+     */
+    public Scope open(String name, Mode mode) {
+        Scope scope = new Scope(name, "request", mode, REQUEST_SCOPE.get());
+        REQUEST_SCOPE.set(scope);
+        return scope;
+    }
+
+    /**
+     * 현재 스레드에서 닫을 때까지 실행되는 select 를 N+1 판단에서 뺀다. 실행된 SQL 수는 그대로 센다.
+     * id 가 하나뿐이면 in 조건도 "=" 로 바뀌어 지연 로딩과 같은 모양이 되므로, 배치 조회는 이 안에서 실행한다.
+     */
+    public static Suppression suppress() {
+        SUPPRESSED.set(SUPPRESSED.get() + 1);
+        return new Suppression();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = currentScope();
+        if (scope != null && scope.mode != Mode.OFF) {
+            scope.record(sql);
+        }
+        return sql;
+    }
+
+    private Scope currentScope() {
+        Scope scope = REQUEST_SCOPE.get();
+        if (scope != null || mode == Mode.OFF || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return scope;
+        }
+
+        scope = (Scope) TransactionSynchronizationManager.getResource(this);
+        if (scope == null) {
+            Scope transactionScope = new Scope(String.valueOf(TransactionSynchronizationManager.getCurrentTransactionName()),
+                    "transaction", mode, null);
+            TransactionSynchronizationManager.bindResource(this, transactionScope);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NPlusOneDetector.this);
+                    transactionScope.recordSummary();
+                }
+            });
+            scope = transactionScope;
+        }
+        return scope;
+    }
+
+    static String shape(String sql) {
+        String withoutComments = COMMENT.matcher(sql).replaceAll(" ");
+        return WHITESPACE.matcher(withoutComments).replaceAll(" ").trim();
+    }
+
+    public static final class Suppression implements AutoCloseable {
+
+        private boolean closed;
+
+        private Suppression() {
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            int depth = SUPPRESSED.get() - 1;
+            if (depth == 0) {
+                SUPPRESSED.remove();
+            } else {
+                SUPPRESSED.set(depth);
+            }
+        }
+    }
+
+    public class Scope implements AutoCloseable {
+
+        private final String name;
+        private final String type;
+        private final Mode mode;
+        private final Scope previous;
+        private final Map<String, Integer> keyLookups = new HashMap<>();
+        private final Map<String, Integer> repeated = new LinkedHashMap<>();
+        private final Set<String> statements = new LinkedHashSet<>();
+        private int statementCount;
+
+        private Scope(String name, String type, Mode mode, Scope previous) {
+            this.name = name;
+            this.type = type;
+            this.mode = mode;
+            this.previous = previous;
+        }
+
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        /**
+         * 실행된 SQL 모양 (주석과 공백을 정리한 SQL, 중복 제외)
+         */
+        public Set<String> getStatements() {
+            return Collections.unmodifiableSet(statements);
+        }
+
+        /**
+         * N+1 로 판단된 SQL 모양과 실행 횟수
+         */
+        public Map<String, Integer> getRepeatedSelects() {
+            return Collections.unmodifiableMap(repeated);
+        }
+
+        private void record(String sql) {
+            statementCount++;
+            String shape = shape(sql);
+            statements.add(shape);
+            if (SUPPRESSED.get() > 0 || !KEY_LOOKUP.matcher(shape).matches() || NOT_ENTITY_LOAD.matcher(shape).find()) {
+                return;
+            }
+
+            int count = keyLookups.merge(shape, 1, Integer::sum);
+            if (count < threshold) {
+                return;
+            }
+            repeated.put(shape, count);
+            if (count > threshold) {
+                return;
+            }
+
+            // 같은 모양은 threshold 에 처음 도달했을 때 한 번만 알린다.
+            String table = table(shape);
+            Counter.builder(N_PLUS_ONE_COUNTER)
+                    .tag("table", table)
+                    .tag("scope", type)
+                    .register(registry)
+                    .increment();
+            if (mode == Mode.FAIL) {
+                throw new NPlusOneDetectedException(name, count, shape);
+            }
+            log.warn("Possible N+1 in {} '{}': {} selects on {} by key, sql={}", type, name, count, table, shape);
+        }
+
+        private void recordSummary() {
+            DistributionSummary.builder(STATEMENTS_SUMMARY)
+                    .tag("scope", type)
+                    .register(registry)
+                    .record(statementCount);
+        }
+
+        private String table(String shape) {
+            Matcher matcher = TABLE.matcher(shape);
+            return matcher.find() ? matcher.group(1) : "unknown";
+        }
+
+        @Override
+        public void close() {
+            if (REQUEST_SCOPE.get() == this) {
+                if (previous == null) {
+                    REQUEST_SCOPE.remove();
+                } else {
+                    REQUEST_SCOPE.set(previous);
+                }
+            }
+            recordSummary();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("querydsl.datasource")
+public class ReplicaDataSourceProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * replica 의 복제 지연을 초 단위로 돌려주는 쿼리, 비어 있으면 연결 가능 여부만 확인한다.
+     * ex) PostgreSQL: select extract(epoch from now() - pg_last_xact_replay_timestamp())
+     */
+    private String lagQuery;
+    private Duration maxLag = Duration.ofSeconds(5);
+    private Duration checkInterval = Duration.ofSeconds(10);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
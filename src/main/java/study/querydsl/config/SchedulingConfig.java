@@ -0,0 +1,12 @@
+package study.querydsl.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 주기 작업(TeamStatsReconciler, MemberUsernameIndex rebuild) 용도
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,21 +1,39 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberRepository;
 
-import java.util.List;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
     private final MemberRepository memberRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/v1/members")
     public Page<MemberTeamDto> searchMember1(MemberSearchCondition condition, Pageable pageable){
@@ -23,8 +41,59 @@ public class MemberController {
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMember2(MemberSearchCondition condition, Pageable pageable){
+    public Page<MemberTeamDto> searchMember2(MemberSearchCondition condition, Pageable pageable,
+                                             @RequestParam(defaultValue = "false") boolean estimate){
+        if (estimate) {
+            return memberRepository.searchPageEstimated(condition, pageable);
+        }
         return memberRepository.searchPageComplex(condition, pageable);
     }
 
+    @GetMapping("/v3/members")
+    public CursorSlice<MemberTeamDto> searchMember3(MemberSearchCondition condition,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "20") int size){
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be greater than zero");
+        }
+        MemberCursor decoded;
+        try {
+            decoded = MemberCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor", e);
+        }
+        return memberRepository.searchSlice(condition, decoded, Math.min(size, 2000));
+    }
+
+    /**
+     * 검색 결과 전체를 NDJSON(기본) 또는 CSV 로 내려준다.
+     * 결과를 모아두지 않고 한 건씩 바로 써서 결과 크기와 관계없이 메모리 사용량이 일정하다.
+     */
+    @GetMapping("/v2/members/export")
+    public ResponseEntity<StreamingResponseBody> exportMembers(MemberSearchCondition condition,
+                                                               @RequestParam(defaultValue = "ndjson") String format){
+        MemberExportFormat exportFormat = MemberExportFormat.from(format);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<MemberTeamDto> rows = memberRepository.streamSearch(condition)) {
+                    exportFormat.writeHeader(writer);
+                    for (MemberTeamDto row : (Iterable<MemberTeamDto>) rows::iterator) {
+                        exportFormat.writeRow(writer, objectMapper, row);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(body);
+    }
+
 }
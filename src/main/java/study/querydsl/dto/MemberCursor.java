@@ -0,0 +1,38 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset 페이징의 연속 토큰
+ * 마지막으로 내려준 member.id 를 담고 있으며, 클라이언트에는 불투명한 문자열로만 노출한다.
+ */
+@Getter
+public class MemberCursor {
+
+    private final Long lastMemberId;
+
+    public MemberCursor(Long lastMemberId) {
+        this.lastMemberId = lastMemberId;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastMemberId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MemberCursor decode(String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            return new MemberCursor(Long.valueOf(decoded));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
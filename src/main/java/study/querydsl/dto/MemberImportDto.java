@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberImportDto {
+
+    private String username;
+    private int age;
+    private String teamName;
+
+    public MemberImportDto() {
+    }
+
+    public MemberImportDto(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 @Data
 public class MemberSearchCondition {
     private String username;
+    private UsernameMatch usernameMatch = UsernameMatch.EXACT;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
@@ -0,0 +1,9 @@
+package study.querydsl.dto;
+
+/**
+ * 회원 이름 검색 방식
+ * EXACT 외에는 {@link study.querydsl.repository.MemberUsernameIndex} 로 후보 id 를 찾는다.
+ */
+public enum UsernameMatch {
+    EXACT, PREFIX, CONTAINS, FUZZY
+}
@@ -2,15 +2,28 @@ package study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import study.querydsl.repository.CountCacheInvalidator;
+import study.querydsl.repository.MemberUsernameIndexListener;
+import study.querydsl.repository.TeamStatsListener;
 
 @Entity
+// 검색 조건(username, age, team)별 인덱스. MemberSearchQueryPlanTest 가 실행 계획으로 확인한다.
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
+@EntityListeners({CountCacheInvalidator.class, MemberUsernameIndexListener.class, TeamStatsListener.class})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-    @Id @GeneratedValue
+    // pooled 시퀀스로 id 를 미리 할당받아 insert 를 JDBC batch 로 묶을 수 있다.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 100)
     @Column(name = "member_id")
     private Long id;
 
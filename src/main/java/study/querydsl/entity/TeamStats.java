@@ -0,0 +1,71 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 팀별 회원 통계 (회원 수, 나이 합/최소/최대)
+ * 회원을 group by 하지 않고 팀 수만큼만 읽도록 TeamStatsListener 가 회원 변경 시 함께 갱신한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+    private long ageSum;
+    private Integer ageMin;
+    private Integer ageMax;
+
+    public TeamStats(Long teamId) {
+        this.teamId = teamId;
+    }
+
+    public Double getAgeAvg() {
+        return memberCount == 0 ? null : (double) ageSum / memberCount;
+    }
+
+    /**
+     * 회원 수와 나이 합을 더하고, 늘어난 쪽의 최소/최대만 반영한다.
+     *
+     * @return 빠진 나이가 현재 최소/최대와 같아서 최소/최대를 다시 계산해야 하면 true
+     */
+    public boolean apply(long countDelta, long ageSumDelta, Integer addedMin, Integer addedMax,
+                         Integer removedMin, Integer removedMax) {
+        boolean boundaryRemoved = (removedMin != null && ageMin != null && removedMin <= ageMin)
+                || (removedMax != null && ageMax != null && removedMax >= ageMax);
+        memberCount += countDelta;
+        ageSum += ageSumDelta;
+        if (memberCount <= 0) {
+            reset(0, 0, null, null);
+            return false;
+        }
+        if (addedMin != null) {
+            ageMin = ageMin == null ? addedMin : Math.min(ageMin, addedMin);
+            ageMax = ageMax == null ? addedMax : Math.max(ageMax, addedMax);
+        }
+        return boundaryRemoved;
+    }
+
+    public void changeBounds(Integer ageMin, Integer ageMax) {
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+
+    public void reset(long memberCount, long ageSum, Integer ageMin, Integer ageMax) {
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkChangeEvent;
+
+/**
+ * Member, Team 엔티티 리스너
+ * 변경 즉시 count 캐시를 비우고, 트랜잭션이 끝나면(커밋, 롤백 모두) 한 번 더 비운다.
+ * 그 사이에 채워진 count 는 커밋 전 값이거나 롤백될 행을 포함한 값일 수 있기 때문이다.
+ * Querydsl4RepositorySupport 의 벌크 연산은 {@link BulkChangeEvent} 로 같은 방식으로 비운다.
+ * 그 밖의 JPQL 벌크 연산(update/delete execute)은 엔티티 리스너를 거치지 않으므로 직접 {@link MemberCountCache#invalidateAll()} 을 호출해야 하며,
+ * 호출하지 않으면 캐시 TTL(member.count-cache.ttl) 이 지날 때까지 이전 count 가 보인다.
+ */
+@Component
+public class CountCacheInvalidator {
+
+    private final MemberCountCache countCache;
+
+    public CountCacheInvalidator(MemberCountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate(Object entity) {
+        invalidate();
+    }
+
+    @EventListener
+    public void bulkChanged(BulkChangeEvent event) {
+        if (event.domainClass() == Member.class || event.domainClass() == Team.class) {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        countCache.invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CountCacheInvalidator.this);
+                    countCache.invalidateAll();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 회원 검색 count 결과 캐시
+ * 같은 검색 조건이면 TTL 동안 count 쿼리를 다시 실행하지 않는다.
+ * Member, Team 변경 시 {@link CountCacheInvalidator} 가 전체를 비운다.
+ */
+@Component
+public class MemberCountCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Clock clock;
+
+    public MemberCountCache(@Value("${member.count-cache.ttl:30s}") Duration ttl) {
+        this(ttl, Clock.systemUTC());
+    }
+
+    MemberCountCache(Duration ttl, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public long get(MemberSearchCondition condition, boolean estimated, LongSupplier countQuery) {
+        Key key = Key.of(condition, estimated);
+        long now = clock.millis();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.count;
+        }
+
+        long count = countQuery.getAsLong();
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.values().removeIf(e -> e.expiresAt <= now);
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry(count, now + ttl.toMillis()));
+        return count;
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    // 검색 조건 helper 와 동일하게 빈 문자열은 조건 없음(null)으로 정규화한다.
+    private record Key(String username, UsernameMatch usernameMatch, String teamName, Integer ageGoe, Integer ageLoe,
+                       boolean estimated) {
+
+        static Key of(MemberSearchCondition condition, boolean estimated) {
+            String username = normalize(condition.getUsername());
+            return new Key(username, username == null ? null : MemberSearchShape.usernameMatch(condition),
+                    normalize(condition.getTeamName()), condition.getAgeGoe(), condition.getAgeLoe(), estimated);
+        }
+
+        private static String normalize(String value) {
+            return StringUtils.hasLength(value) ? value : null;
+        }
+    }
+
+    private record Entry(long count, long expiresAt) {
+    }
+}
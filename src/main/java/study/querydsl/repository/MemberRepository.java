@@ -1,7 +1,11 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 
 import java.util.List;
@@ -10,4 +14,17 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
     List<Member> findByUsername(String username);
 
+    // QuerydslPredicateExecutor 조회도 읽기 전용 트랜잭션으로 실행해서 replica 로 라우팅되도록 한다.
+    @Override
+    @Transactional(readOnly = true)
+    Iterable<Member> findAll(Predicate predicate);
+
+    @Override
+    @Transactional(readOnly = true)
+    Page<Member> findAll(Predicate predicate, Pageable pageable);
+
+    @Override
+    @Transactional(readOnly = true)
+    long count(Predicate predicate);
+
 }
@@ -2,13 +2,43 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
+    /**
+     * 여러 조건의 search 결과를 한 번의 쿼리로 조회한다. 같은 조건은 한 번만 조회하며, 각 결과는 member id 순서다.
+     * 결과는 conditions 와 같은 순서(i 번째 결과가 i 번째 조건)이고 수정할 수 없다.
+     * 조건 객체는 수정 가능하므로 결과의 키로 쓰지 않는다.
+     */
+    List<List<MemberTeamDto>> searchAll(List<MemberSearchCondition> conditions);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable);
+    /**
+     * 조회 결과를 한 번에 메모리에 올리지 않고 JDBC fetch size 단위로 흘려보낸다.
+     * 트랜잭션 안에서 호출해야 하며, 다 사용한 stream 은 반드시 close 해야 한다.
+     * 같은 트랜잭션의 별도 세션에서 읽으므로 호출한 쪽 영속성 컨텍스트(이미 조회한 엔티티)는 건드리지 않는다.
+     */
+    Stream<MemberTeamDto> streamSearch(MemberSearchCondition condition);
+    CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, MemberCursor cursor, int size);
+    /**
+     * search / searchPageComplex 를 전용 스레드 풀의 별도 읽기 전용 트랜잭션에서 실행한다.
+     * 호출한 쪽 트랜잭션에서 아직 커밋하지 않은 변경은 보이지 않는다.
+     */
+    CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition);
+    CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable);
+    /**
+     * streamSearch 의 Flux 버전. 트랜잭션 밖에서 호출해도 되고, 구독할 때마다 별도 EntityManager 와 커넥션으로 조회한다.
+     * 구독자가 요청한 만큼만 읽으며 upstream 요청은 JDBC fetch size 단위로 묶인다.
+     */
+    Flux<MemberTeamDto> searchFlux(MemberSearchCondition condition);
 }
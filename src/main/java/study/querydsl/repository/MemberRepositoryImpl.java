@@ -1,104 +1,440 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+import study.querydsl.config.NPlusOneDetector;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
-import study.querydsl.entity.Member;
+import study.querydsl.dto.UsernameMatch;
+import reactor.core.publisher.Flux;
+import study.querydsl.repository.support.AsyncQueryExecutor;
+import study.querydsl.repository.support.CountQueryBuilder;
+import study.querydsl.repository.support.ParallelCountExecutor;
+import study.querydsl.repository.support.QueryMetrics;
+import study.querydsl.repository.support.QueryTemplate;
+import study.querydsl.repository.support.WindowCountPagination;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
+    private static final String METRIC_REPOSITORY = "MemberRepository";
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    @SuppressWarnings("rawtypes")
+    private static final Param<Collection> TEAM_IDS = new Param<>(Collection.class, "teamIds");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+    private static final int SEARCH_ALL_CHUNK_SIZE = 50;
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final QueryMetrics metrics;
+    private final ParallelCountExecutor parallelCountExecutor;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+    private final TeamNameResolver teamNameResolver;
+    private final MemberUsernameIndex usernameIndex;
+    private final boolean teamIdRewrite;
+    private final int estimateThreshold;
+    private final int streamFetchSize;
+    private final Map<MemberSearchShape, QueryTemplate<MemberTeamDto>> searchTemplates = new ConcurrentHashMap<>();
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, QueryMetrics metrics,
+                                ParallelCountExecutor parallelCountExecutor, AsyncQueryExecutor asyncQueryExecutor,
+                                TeamNameResolver teamNameResolver,
+                                MemberUsernameIndex usernameIndex,
+                                @Value("${member.search.team-id-rewrite:true}") boolean teamIdRewrite,
+                                @Value("${member.count.estimate-threshold:1000}") int estimateThreshold,
+                                @Value("${member.stream.fetch-size:500}") int streamFetchSize) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.metrics = metrics;
+        this.parallelCountExecutor = parallelCountExecutor;
+        this.asyncQueryExecutor = asyncQueryExecutor;
+        this.teamNameResolver = teamNameResolver;
+        this.usernameIndex = usernameIndex;
+        this.teamIdRewrite = teamIdRewrite;
+        this.estimateThreshold = estimateThreshold;
+        this.streamFetchSize = streamFetchSize;
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id, member.username, member.age, team.id, team.name))
+        // 조건의 모양(어떤 값이 채워져 있는지)별로 한 번만 JPQL 을 만들고 이후에는 값만 바인딩한다.
+        MemberSearchShape shape = MemberSearchShape.of(condition);
+        if (shape.username() && shape.usernameMatch() != UsernameMatch.EXACT) {
+            // 인덱스 결과 id 목록이 매번 달라지므로 템플릿 대신 동적 쿼리로 조회한다.
+            return metrics.content(METRIC_REPOSITORY, "search", shape.tag(), () -> searchQuery(condition).fetch());
+        }
+        QueryTemplate<MemberTeamDto> template = searchTemplates.computeIfAbsent(shape, this::compileSearch);
+
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        if (shape.username()) {
+            params.put(USERNAME, condition.getUsername());
+        }
+        if (shape.teamName() && teamIdRewrite) {
+            List<Long> teamIds = teamNameResolver.resolveIds(condition.getTeamName());
+            if (teamIds.isEmpty()) {
+                return List.of();
+            }
+            params.put(TEAM_IDS, teamIds);
+        } else if (shape.teamName()) {
+            params.put(TEAM_NAME, condition.getTeamName());
+        }
+        if (shape.ageGoe()) {
+            params.put(AGE_GOE, condition.getAgeGoe());
+        }
+        if (shape.ageLoe()) {
+            params.put(AGE_LOE, condition.getAgeLoe());
+        }
+        return metrics.content(METRIC_REPOSITORY, "search", shape.tag(), () -> template.fetch(em, params));
+    }
+
+    /**
+     * 조건들을 OR 로 묶어 한 번에 조회하고, 조건마다 "case when 조건 then 1 else 0 end" 구분 컬럼을 함께 select 해서
+     * 각 행이 어느 조건에 해당하는지 메모리에서 나눈다. 한 행이 여러 조건에 해당할 수 있다.
+     * select 컬럼이 조건 수만큼 늘어나므로 SEARCH_ALL_CHUNK_SIZE 개씩 나눠서 조회한다.
+     */
+    @Override
+    public List<List<MemberTeamDto>> searchAll(List<MemberSearchCondition> conditions) {
+        // 같은 조건은 한 번만 조회한다. 조건 객체는 이 메서드 안에서만 키로 쓰고 결과에는 남기지 않는다.
+        Map<MemberSearchCondition, Integer> positions = new HashMap<>();
+        List<MemberSearchCondition> distinct = new ArrayList<>();
+        int[] positionOf = new int[conditions.size()];
+        for (int i = 0; i < conditions.size(); i++) {
+            MemberSearchCondition condition = conditions.get(i);
+            positionOf[i] = positions.computeIfAbsent(condition, key -> {
+                distinct.add(key);
+                return distinct.size() - 1;
+            });
+        }
+
+        List<List<MemberTeamDto>> found = new ArrayList<>(distinct.size());
+        distinct.forEach(condition -> found.add(new ArrayList<>()));
+        for (int from = 0; from < distinct.size(); from += SEARCH_ALL_CHUNK_SIZE) {
+            int to = Math.min(from + SEARCH_ALL_CHUNK_SIZE, distinct.size());
+            searchChunk(distinct.subList(from, to), found.subList(from, to));
+        }
+
+        List<List<MemberTeamDto>> result = new ArrayList<>(conditions.size());
+        for (int position : positionOf) {
+            result.add(Collections.unmodifiableList(found.get(position)));
+        }
+        return result;
+    }
+
+    private void searchChunk(List<MemberSearchCondition> chunk, List<List<MemberTeamDto>> result) {
+        QMemberTeamDto dto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+        List<Expression<?>> select = new ArrayList<>();
+        select.add(dto);
+        List<Predicate> predicates = new ArrayList<>();
+        boolean matchesAll = false;
+        for (MemberSearchCondition condition : chunk) {
+            Predicate predicate = ExpressionUtils.allOf(usernameMatches(condition),
+                    teamNameEq(condition.getTeamName()),
+                    ageGoe(condition.getAgeGoe()),
+                    ageLoe(condition.getAgeLoe()));
+            predicates.add(predicate);
+            if (predicate == null) {
+                // 빈 조건은 전체 회원이므로 where 절을 만들지 않는다.
+                matchesAll = true;
+            } else {
+                select.add(new CaseBuilder().when(predicate).then(1).otherwise(0));
+            }
+        }
+        Predicate where = matchesAll ? null : ExpressionUtils.anyOf(predicates);
+
+        List<Tuple> rows = metrics.content(METRIC_REPOSITORY, "searchAll", "batch", () -> queryFactory
+                .select(select.toArray(new Expression<?>[0]))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch();
-//        return null;
+                .where(where)
+                .orderBy(member.id.asc())
+                .fetch());
+
+        for (Tuple row : rows) {
+            MemberTeamDto found = row.get(dto);
+            int column = 1;
+            for (int i = 0; i < chunk.size(); i++) {
+                if (predicates.get(i) == null) {
+                    result.get(i).add(found);
+                } else if (row.get(column++, Integer.class) == 1) {
+                    result.get(i).add(found);
+                }
+            }
+        }
     }
 
-    @Override
-    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+    private BooleanExpression teamNameEq(Param<String> teamName) {
+        // team id 목록은 건수가 매번 달라질 수 있으므로 collection 파라미터 하나로 바인딩한다.
+        return teamIdRewrite
+                ? Expressions.booleanTemplate("{0} in {1}", member.team.id, TEAM_IDS)
+                : team.name.eq(teamName);
+    }
+
+    private QueryTemplate<MemberTeamDto> compileSearch(MemberSearchShape shape) {
+        return QueryTemplate.compile(em, queryFactory
                 .select(new QMemberTeamDto(
                         member.id, member.username, member.age, team.id, team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+                .where(shape.username() ? member.username.eq(USERNAME) : null,
+                        shape.teamName() ? teamNameEq(TEAM_NAME) : null,
+                        shape.ageGoe() ? member.age.goe(AGE_GOE) : null,
+                        shape.ageLoe() ? member.age.loe(AGE_LOE) : null));
+    }
 
-        return new PageImpl<>(content, pageable, total);
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return metrics.page(METRIC_REPOSITORY, "searchPageSimple", MemberSearchShape.of(condition).tag(),
+                () -> WindowCountPagination.fetchPage(em, sortedSearchQuery(condition, pageable), pageable));
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        String shape = MemberSearchShape.of(condition).tag();
+        JPAQuery<MemberTeamDto> query = sortedSearchQuery(condition, pageable);
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(em, query);
+
+        return parallelCountExecutor.getPage(
+                () -> metrics.content(METRIC_REPOSITORY, "searchPageComplex", shape, () -> query
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch()),
+                pageable,
+                () -> countCache.get(condition, false,
+                        () -> metrics.count(METRIC_REPOSITORY, "searchPageComplex", shape, countQuery::fetchOne)));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable) {
+        String shape = MemberSearchShape.of(condition).tag();
+        List<MemberTeamDto> content = metrics.content(METRIC_REPOSITORY, "searchPageEstimated", shape, () -> sortedSearchQuery(condition, pageable)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countCache.get(condition, true,
+                () -> metrics.count(METRIC_REPOSITORY, "searchPageEstimated", shape, () -> estimateCount(condition))));
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id, member.username, member.age, team.id, team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+    }
+
+    /**
+     * Pageable 정렬은 {@link MemberSearchSort} 에 등록된 키만 허용하고, 마지막에 member.id 를 붙인다.
+     */
+    private JPAQuery<MemberTeamDto> sortedSearchQuery(MemberSearchCondition condition, Pageable pageable) {
+        return searchQuery(condition)
+                .orderBy(MemberSearchSort.TRANSLATOR.translate(pageable.getSort()));
+    }
+
+    /**
+     * 정확한 COUNT(*) 대신 최대 estimateThreshold 건까지만 id 를 읽어본다.
+     * 기준보다 적으면 정확한 값이고, 넘으면 전체 회원 수(조건을 만족하는 회원 수의 상한)를 돌려준다.
+     */
+    private long estimateCount(MemberSearchCondition condition) {
+        JPAQuery<Long> query = queryFactory
+                .select(member.id)
+                .from(member);
+        if (!teamIdRewrite) {
+            query.leftJoin(member.team, team);
+        }
+        List<Long> ids = query
+                .where(usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .limit(estimateThreshold)
                 .fetch();
+        if (ids.size() < estimateThreshold) {
+            return ids.size();
+        }
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
+        return countCache.get(new MemberSearchCondition(), false, () -> queryFactory
+                .select(member.count())
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .fetchOne());
+    }
 
+    @Override
+    public Stream<MemberTeamDto> streamSearch(MemberSearchCondition condition) {
+        // 호출한 쪽 영속성 컨텍스트를 비우지 않도록, 같은 커넥션(트랜잭션)을 쓰는 읽기 전용 세션을 따로 열어 조회한다.
+        // 별도 세션은 호출한 쪽 변경을 자동으로 flush 하지 않으므로, 공유 EntityManager 의 auto flush 를 먼저 해둔다.
+        if (em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+        Session session = em.unwrap(Session.class).sessionWithOptions()
+                .connection()
+                .openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            return searchQuery(condition)
+                    .clone(session)
+                    .orderBy(member.id.asc())
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .stream()
+                    .onClose(session::close);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition) {
+        return asyncQueryExecutor.supply(() -> search(condition));
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.supply(() -> searchPageComplex(condition, pageable));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Flux<MemberTeamDto> searchFlux(MemberSearchCondition condition) {
+        // 조건으로 만든 쿼리를 구독마다 열리는 EntityManager 로 복사해서 실행한다.
+        return asyncQueryExecutor.stream(entityManager -> searchQuery(condition)
+                        .clone(entityManager)
+                        .orderBy(member.id.asc())
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .stream())
+                .limitRate(streamFetchSize);
+    }
+
+    @Override
+    public CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, MemberCursor cursor, int size) {
+        Assert.isTrue(size > 0, "Slice size must be greater than zero!");
+
+        // offset 대신 마지막 member.id 이후부터 조회(seek)하므로 뒤쪽 페이지도 앞 페이지와 같은 비용으로 조회된다.
+        // 다음 페이지 존재 여부는 size + 1 건을 조회해서 판단한다.
+        List<MemberTeamDto> content = metrics.content(METRIC_REPOSITORY, "searchSlice", MemberSearchShape.of(condition).tag(),
+                () -> searchQuery(condition)
+                        .where(memberIdGt(cursor))
+                        .orderBy(member.id.asc())
+                        .limit(size + 1)
+                        .fetch());
+
+        if (content.size() <= size) {
+            return new CursorSlice<>(content, null);
+        }
+
+        List<MemberTeamDto> page = content.subList(0, size);
+        MemberCursor next = new MemberCursor(page.get(size - 1).getMemberId());
+        return new CursorSlice<>(page, next.encode());
+    }
+
+    private BooleanExpression memberIdGt(MemberCursor cursor) {
+        return cursor == null ? null : member.id.gt(cursor.getLastMemberId());
     }
 
+    /**
+     * EXACT 가 아니면 {@link MemberUsernameIndex} 로 후보 id 를 먼저 좁힌다.
+     * PREFIX, CONTAINS 는 인덱스가 늦게 반영된 경우를 위해 like 조건을 함께 건다.
+     * 후보가 max-hits 보다 많으면 인덱스를 타지 않는 like 로 전체를 읽게 되므로 {@link UsernameSearchTooBroadException} 으로 거절한다.
+     */
+    private BooleanExpression usernameMatches(MemberSearchCondition condition) {
+        String username = condition.getUsername();
+        if (isEmpty(username)) {
+            return null;
+        }
+        UsernameMatch match = MemberSearchShape.usernameMatch(condition);
+        if (match == UsernameMatch.EXACT) {
+            return member.username.eq(username);
+        }
+
+        List<Long> ids = usernameIndex.search(username, match);
+        return switch (match) {
+            case PREFIX -> member.username.startsWithIgnoreCase(username).and(member.id.in(ids));
+            case CONTAINS -> member.username.containsIgnoreCase(username).and(member.id.in(ids));
+            default -> member.id.in(recheckFuzzy(username, ids));
+        };
+    }
+
+    /**
+     * 인덱스가 늦게 반영된 이름이 있을 수 있으므로, like 로 다시 거를 수 없는 FUZZY 후보는 DB 의 현재 이름을 읽어 다시 확인한다.
+     */
+    private List<Long> recheckFuzzy(String username, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+            queryFactory
+                    .select(member.id, member.username)
+                    .from(member)
+                    .where(member.id.in(ids))
+                    .fetch()
+                    .forEach(row -> usernames.put(row.get(member.id), row.get(member.username)));
+        }
+        return usernameIndex.fuzzyMatches(username, usernames);
+    }
+
+    /**
+     * team-id-rewrite 가 켜져 있으면 팀 이름을 (쿼리 캐시된) 팀 id 로 바꿔 member.team_id 로 비교한다.
+     * where 절이 team 을 참조하지 않으므로 count 쿼리에서는 team 조인이 빠진다.
+     * 일치하는 팀이 없으면 빈 in 절이 되어 결과도 없다.
+     */
     private BooleanExpression teamNameEq(String teamName) {
-        return isEmpty(teamName) ? null : team.name.eq(teamName);
+        if (isEmpty(teamName)) {
+            return null;
+        }
+        return teamIdRewrite
+                ? member.team.id.in(teamNameResolver.resolveIds(teamName))
+                : team.name.eq(teamName);
     }
+
     private BooleanExpression ageGoe(Integer ageGoe) {
         return ageGoe == null ? null : member.age.goe(ageGoe);
     }
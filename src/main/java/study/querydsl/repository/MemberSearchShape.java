@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.isEmpty;
+
+/**
+ * 검색 조건 중 어떤 값이 채워져 있는지(쿼리의 모양)
+ * 같은 모양이면 파라미터 값만 다르고 생성되는 JPQL 은 같다.
+ */
+record MemberSearchShape(boolean username, UsernameMatch usernameMatch, boolean teamName, boolean ageGoe, boolean ageLoe) {
+
+    static MemberSearchShape of(MemberSearchCondition condition) {
+        boolean username = !isEmpty(condition.getUsername());
+        return new MemberSearchShape(
+                username,
+                username ? usernameMatch(condition) : UsernameMatch.EXACT,
+                !isEmpty(condition.getTeamName()),
+                condition.getAgeGoe() != null,
+                condition.getAgeLoe() != null);
+    }
+
+    static UsernameMatch usernameMatch(MemberSearchCondition condition) {
+        return condition.getUsernameMatch() == null ? UsernameMatch.EXACT : condition.getUsernameMatch();
+    }
+
+    String tag() {
+        StringJoiner joiner = new StringJoiner("+");
+        joiner.setEmptyValue("none");
+        if (username && usernameMatch == UsernameMatch.EXACT) {
+            joiner.add("username");
+        } else if (username) {
+            joiner.add("username:" + usernameMatch.name().toLowerCase());
+        }
+        if (teamName) {
+            joiner.add("teamName");
+        }
+        if (ageGoe) {
+            joiner.add("ageGoe");
+        }
+        if (ageLoe) {
+            joiner.add("ageLoe");
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository;
+
+import study.querydsl.repository.support.SortTranslator;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 API(MemberTeamDto) 에서 허용하는 정렬 키. 키 이름은 MemberTeamDto 속성 이름이다.
+ * team.name 정렬은 검색 쿼리가 team 을 left join 하고 있어야 한다.
+ */
+final class MemberSearchSort {
+
+    static final SortTranslator TRANSLATOR = SortTranslator.of(member.id)
+            .allow("memberId", member.id)
+            .allow("username", member.username)
+            .allow("age", member.age)
+            .allow("teamName", team.name);
+
+    private MemberSearchSort() {
+    }
+}
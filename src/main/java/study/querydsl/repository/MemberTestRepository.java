@@ -1,6 +1,9 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,9 +11,12 @@ import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.BulkProgress;
+import study.querydsl.repository.support.ColumnarResult;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
@@ -18,6 +24,7 @@ import static study.querydsl.entity.QTeam.team;
 
 @Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
+
     public MemberTestRepository() {
         super(Member.class);
     }
@@ -40,8 +47,9 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 .where(usernameEq(condition.getUsername()), teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()), ageLoe(condition.getAgeLoe()));
 
-        List<Member> content = getQuerydsl().applyPagination(pageable, query).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
+        JPAQuery<Long> countQuery = countQuery(query);
+        List<Member> content = paginate(pageable, query).fetch();
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
 
     }
 
@@ -71,6 +79,41 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 
     }
 
+    /**
+     * 팀별 회원 수와 평균 나이. 열 순서는 team.name, member.count(), member.age.avg()
+     */
+    public ColumnarResult teamAgeStatistics(MemberSearchCondition condition) {
+        return fetchColumns(selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()), teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()), ageLoe(condition.getAgeLoe()))
+                        .groupBy(team.name)
+                        .orderBy(team.name.asc()),
+                team.name, member.count(), member.age.avg());
+    }
+
+    /**
+     * 조건에 맞는 회원 나이를 amount 만큼 더한다. 청크 단위로 나눠 실행한다.
+     * count 캐시는 청크마다 발행되는 BulkChangeEvent 로 비워진다.
+     */
+    public long bulkAddAge(MemberSearchCondition condition, int amount, int batchSize, Consumer<BulkProgress> progress) {
+        return bulkUpdate(bulkWhere(condition), update -> update.set(member.age, member.age.add(amount)),
+                batchSize, progress);
+    }
+
+    public long bulkDelete(MemberSearchCondition condition, int batchSize, Consumer<BulkProgress> progress) {
+        return bulkDelete(bulkWhere(condition), batchSize, progress);
+    }
+
+    // 벌크 연산은 join 을 쓸 수 없어서 팀 이름 조건은 서브쿼리로 바꾼다.
+    private Predicate bulkWhere(MemberSearchCondition condition) {
+        return ExpressionUtils.allOf(usernameEq(condition.getUsername()),
+                isEmpty(condition.getTeamName()) ? null : member.team.id.in(JPAExpressions
+                        .select(team.id)
+                        .from(team)
+                        .where(team.name.eq(condition.getTeamName()))),
+                ageGoe(condition.getAgeGoe()), ageLoe(condition.getAgeLoe()));
+    }
 
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
@@ -0,0 +1,252 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.UsernameMatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 이름 검색용 로컬 Lucene 인덱스 (메모리)
+ * <ul>
+ *     <li>PREFIX, FUZZY: 소문자로 바꾼 이름 전체를 키워드로 색인한 username 필드</li>
+ *     <li>CONTAINS: 3-gram 으로 색인한 username_ngram 필드. 3 글자보다 짧으면 username 필드 wildcard</li>
+ * </ul>
+ * 애플리케이션 시작 시와 member.username-index.rebuild-interval 마다 DB 에서 다시 만들고,
+ * 그 사이에는 {@link MemberUsernameIndexListener} 가 커밋된 변경(Querydsl4RepositorySupport 의 벌크 연산 포함)을 반영한다.
+ * 인스턴스마다 따로 가지는 인덱스이므로 다른 인스턴스의 변경이나 직접 실행한 JPQL 벌크 연산은 다음 rebuild 까지 반영되지 않는다.
+ * 그래서 검색 쪽에서는 결과 id 를 DB 의 현재 이름으로 한 번 더 거른다. (PREFIX, CONTAINS 는 like, FUZZY 는 {@link #fuzzyMatches})
+ */
+@Slf4j
+@Component
+public class MemberUsernameIndex implements DisposableBean {
+
+    private static final String ID = "id";
+    private static final String USERNAME = "username";
+    private static final String USERNAME_NGRAM = "username_ngram";
+    private static final int NGRAM = 3;
+
+    private final EntityManagerFactory emf;
+    private final int maxHits;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // rebuild 중에는 검색이 지워진 인덱스를 보지 않도록 searcher 를 갱신하지 않는다.
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public MemberUsernameIndex(EntityManagerFactory emf,
+                               @Value("${member.username-index.max-hits:1000}") int maxHits) throws IOException {
+        this.emf = emf;
+        this.maxHits = maxHits;
+        this.writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(new TrigramAnalyzer()));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${member.username-index.rebuild-interval:PT10M}",
+            initialDelayString = "${member.username-index.rebuild-interval:PT10M}")
+    public void rebuild() {
+        EntityManager em = emf.createEntityManager();
+        rebuildLock.lock();
+        try {
+            em.getTransaction().begin();
+            writer.deleteAll();
+            long count = 0;
+            try (Stream<Tuple> rows = new JPAQueryFactory(em)
+                    .select(member.id, member.username)
+                    .from(member)
+                    .stream()) {
+                for (Tuple row : (Iterable<Tuple>) rows::iterator) {
+                    writer.addDocument(document(row.get(member.id), row.get(member.username)));
+                    count++;
+                }
+            }
+            writer.commit();
+            dirty.set(true);
+            log.info("Rebuilt member username index with {} members", count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rebuildLock.unlock();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    public void index(Long id, String username) {
+        try {
+            if (username == null) {
+                writer.deleteDocuments(new Term(ID, id.toString()));
+            } else {
+                writer.updateDocument(new Term(ID, id.toString()), document(id, username));
+            }
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete(Long id) {
+        index(id, null);
+    }
+
+    /**
+     * @return 이름이 일치하는 회원 id. FUZZY 는 점수가 높은 max-hits 건만 돌려준다.
+     * @throws UsernameSearchTooBroadException PREFIX, CONTAINS 결과가 max-hits 보다 많은 경우
+     */
+    public List<Long> search(String username, UsernameMatch match) {
+        String text = username.toLowerCase(Locale.ROOT);
+        Query query = switch (match) {
+            case EXACT -> new TermQuery(new Term(USERNAME, text));
+            case PREFIX -> new ConstantScoreQuery(new PrefixQuery(new Term(USERNAME, text)));
+            case CONTAINS -> new ConstantScoreQuery(containsQuery(text));
+            case FUZZY -> new FuzzyQuery(new Term(USERNAME, text));
+        };
+
+        IndexSearcher searcher = null;
+        try {
+            refresh();
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, maxHits + 1);
+            if (topDocs.scoreDocs.length > maxHits && match != UsernameMatch.FUZZY) {
+                throw new UsernameSearchTooBroadException(username, match, maxHits);
+            }
+
+            StoredFields storedFields = searcher.storedFields();
+            List<Long> ids = new ArrayList<>(topDocs.scoreDocs.length);
+            for (int i = 0; i < Math.min(topDocs.scoreDocs.length, maxHits); i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                ids.add(Long.valueOf(storedFields.document(scoreDoc.doc).get(ID)));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+    }
+
+    /**
+     * FUZZY 검색과 같은 기준(소문자, 편집 거리 2, 전위 허용)으로 현재 이름이 여전히 일치하는 id 만 남긴다.
+     *
+     * @param usernames id -> DB 의 현재 이름
+     */
+    public List<Long> fuzzyMatches(String username, Map<Long, String> usernames) {
+        CharacterRunAutomaton automaton = new CharacterRunAutomaton(
+                new LevenshteinAutomata(username.toLowerCase(Locale.ROOT), FuzzyQuery.defaultTranspositions)
+                        .toAutomaton(FuzzyQuery.defaultMaxEdits));
+        List<Long> ids = new ArrayList<>(usernames.size());
+        usernames.forEach((id, current) -> {
+            if (current != null && automaton.run(current.toLowerCase(Locale.ROOT))) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private void refresh() throws IOException {
+        if (!dirty.get() || !rebuildLock.tryLock()) {
+            return;
+        }
+        try {
+            if (dirty.getAndSet(false)) {
+                searcherManager.maybeRefreshBlocking();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Query containsQuery(String text) {
+        if (text.length() < NGRAM) {
+            return new WildcardQuery(new Term(USERNAME, "*" + text + "*"));
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (int i = 0; i + NGRAM <= text.length(); i++) {
+            builder.add(new TermQuery(new Term(USERNAME_NGRAM, text.substring(i, i + NGRAM))), BooleanClause.Occur.FILTER);
+        }
+        // 3-gram 이 모두 들어 있어도 순서가 다를 수 있으므로 최종 확인은 DB 의 like 조건이 한다.
+        return builder.build();
+    }
+
+    private Document document(Long id, String username) {
+        Document document = new Document();
+        document.add(new StringField(ID, id.toString(), Field.Store.YES));
+        document.add(new StringField(USERNAME, username.toLowerCase(Locale.ROOT), Field.Store.NO));
+        document.add(new TextField(USERNAME_NGRAM, username, Field.Store.NO));
+        return document;
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    private static final class TrigramAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new NGramTokenizer(NGRAM, NGRAM);
+            return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+        }
+    }
+}
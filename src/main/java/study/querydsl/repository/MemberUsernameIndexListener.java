@@ -0,0 +1,128 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.config.NPlusOneDetector;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.BulkChangeEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * Member 엔티티 리스너
+ * 변경된 이름을 모아 두었다가 트랜잭션이 커밋된 뒤에 {@link MemberUsernameIndex} 에 반영한다. 롤백된 변경은 인덱스에 남지 않는다.
+ * 그래서 같은 트랜잭션 안의 이름 검색에는 아직 커밋되지 않은 이름이 보이지 않는다.
+ * Querydsl4RepositorySupport 의 벌크 연산은 {@link BulkChangeEvent} 의 id 를 커밋 직전에 DB 에서 다시 읽어 함께 반영한다.
+ */
+@Component
+public class MemberUsernameIndexListener {
+
+    // in 절 파라미터 수 제한을 넘지 않도록 나눠서 조회한다.
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final MemberUsernameIndex index;
+    private final JPAQueryFactory queryFactory;
+
+    // 엔티티 리스너는 EntityManagerFactory 를 만드는 중에 생성되므로, EntityManagerFactory 를 쓰는 빈은 지연 주입한다.
+    public MemberUsernameIndexListener(@Lazy MemberUsernameIndex index, @Lazy EntityManager em) {
+        this.index = index;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void index(Member member) {
+        changed(member.getId(), member.getUsername());
+    }
+
+    @PostRemove
+    public void delete(Member member) {
+        changed(member.getId(), null);
+    }
+
+    @EventListener
+    public void bulkChanged(BulkChangeEvent event) {
+        if (event.domainClass() != Member.class) {
+            return;
+        }
+        Changes changes = changes();
+        if (changes == null) {
+            // 벌크 연산은 청크 트랜잭션 안에서 발행되므로 여기에 오지 않는다. 오더라도 다음 rebuild 가 맞춘다.
+            return;
+        }
+        event.ids().forEach(id -> changes.bulk.add((Long) id));
+    }
+
+    private void changed(Long id, String username) {
+        Changes changes = changes();
+        if (changes == null) {
+            index.index(id, username);
+            return;
+        }
+        changes.usernames.put(id, username);
+    }
+
+    private Changes changes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        return changes;
+    }
+
+    private final class Changes implements TransactionSynchronization {
+
+        // id -> 이름 (삭제는 null). 나중 변경이 앞의 값을 덮어쓴다.
+        private final Map<Long, String> usernames = new LinkedHashMap<>();
+        private final Set<Long> bulk = new LinkedHashSet<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // 벌크 연산으로 바뀐 이름은 DB 에서 읽는다. 이후 커밋 flush 에서 바뀌는 엔티티는 리스너가 다시 덮어쓴다.
+            List<Long> ids = new ArrayList<>(bulk);
+            bulk.clear();
+            for (int from = 0; from < ids.size(); from += MAX_BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + MAX_BATCH_SIZE, ids.size()));
+                Map<Long, String> current = new HashMap<>();
+                try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                    queryFactory
+                            .select(member.id, member.username)
+                            .from(member)
+                            .where(member.id.in(batch))
+                            .fetch()
+                            .forEach(row -> current.put(row.get(member.id), row.get(member.username)));
+                }
+                batch.forEach(id -> usernames.put(id, current.get(id)));
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MemberUsernameIndexListener.this);
+            if (status == STATUS_COMMITTED) {
+                usernames.forEach(index::index);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Team;
+
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.function.ToLongFunction;
+
+/**
+ * Team 2차 캐시와 팀 이름 쿼리 캐시의 hit/miss/put 을 querydsl.cache 로 노출한다.
+ * 값은 Caffeine JCache 의 캐시 통계(CacheStatisticsMXBean)에서 읽는다. 통계는 application.conf 의 monitoring.statistics 로 켠다.
+ */
+@Component
+public class TeamCacheMetrics implements MeterBinder {
+
+    public static final String CACHE_COUNTER = "querydsl.cache";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, Team.CACHE_REGION);
+        bind(registry, TeamNameResolver.QUERY_CACHE_REGION);
+    }
+
+    private void bind(MeterRegistry registry, String region) {
+        counter(registry, region, "hit", CacheStatisticsMXBean::getCacheHits);
+        counter(registry, region, "miss", CacheStatisticsMXBean::getCacheMisses);
+        counter(registry, region, "put", CacheStatisticsMXBean::getCachePuts);
+    }
+
+    private void counter(MeterRegistry registry, String region, String result,
+                         ToLongFunction<CacheStatisticsMXBean> value) {
+        FunctionCounter.builder(CACHE_COUNTER, this, metrics -> {
+                    // 쿼리 캐시 region 은 처음 사용될 때 만들어지므로 그 전에는 0 으로 본다.
+                    CacheStatisticsMXBean statistics = metrics.statistics(region);
+                    return statistics == null ? 0 : value.applyAsLong(statistics);
+                })
+                .tag("region", region)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private CacheStatisticsMXBean statistics(String region) {
+        ObjectName pattern;
+        try {
+            pattern = new ObjectName("javax.cache:type=CacheStatistics,Cache=" + region + ",*");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("invalid cache region: " + region, e);
+        }
+        return server.queryNames(pattern, null).stream()
+                .findFirst()
+                .map(name -> JMX.newMXBeanProxy(server, name, CacheStatisticsMXBean.class))
+                .orElse(null);
+    }
+}
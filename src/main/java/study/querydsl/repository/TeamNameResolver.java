@@ -0,0 +1,39 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 이름 -> 팀 id 조회
+ * 결과는 Hibernate 쿼리 캐시(QUERY_CACHE_REGION)에 저장되고, team 테이블이 변경되면 Hibernate 가 무효화한다.
+ * 팀 이름은 유일하지 않으므로 id 목록을 돌려준다.
+ */
+@Component
+@Transactional(readOnly = true)
+public class TeamNameResolver {
+
+    public static final String QUERY_CACHE_REGION = "team-name";
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamNameResolver(EntityManager em) {
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    public List<Long> resolveIds(String teamName) {
+        return queryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName))
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .setHint(HibernateHints.HINT_CACHE_REGION, QUERY_CACHE_REGION)
+                .fetch();
+    }
+}
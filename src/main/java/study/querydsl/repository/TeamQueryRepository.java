@@ -0,0 +1,81 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BatchLoader;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+@Repository
+public class TeamQueryRepository extends Querydsl4RepositorySupport {
+
+    public TeamQueryRepository() {
+        super(Team.class);
+    }
+
+    /**
+     * 팀 페이지와 각 팀의 회원을 함께 조회한다.
+     * 컬렉션 fetch join 에 limit 을 걸면 Hibernate 가 메모리에서 페이징하므로,
+     * 먼저 팀 id 만 페이징하고 그 id 들로 회원을 한 번에 fetch join 한다.
+     * 쿼리 수는 팀 수와 관계없이 id 조회, 팀+회원 조회, count 세 번이다.
+     */
+    public Page<Team> findPageWithMembers(Pageable pageable) {
+        JPAQuery<Long> idQuery = select(team.id)
+                .from(team);
+        List<Long> ids = paginate(pageable, idQuery).fetch();
+
+        List<Team> content = ids.isEmpty() ? List.of() : selectFrom(team)
+                .distinct()
+                .leftJoin(team.members, member).fetchJoin()
+                .where(team.id.in(ids))
+                .fetch();
+
+        // in 조회는 순서를 보장하지 않으므로 id 페이지 순서대로 다시 정렬한다.
+        Map<Long, Integer> order = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            order.put(ids.get(i), i);
+        }
+        List<Team> sorted = content.stream()
+                .sorted(Comparator.comparing(t -> order.get(t.getId())))
+                .toList();
+
+        JPAQuery<Long> countQuery = countQuery(idQuery);
+        return PageableExecutionUtils.getPage(sorted, pageable, countQuery::fetchOne);
+    }
+
+    /**
+     * team_id 로 팀을 모아서 조회하는 요청 단위 loader
+     * 예: teamLoader().resolve(members, Member::getTeam) 후에는 member.getTeam() 접근이 쿼리 없이 된다.
+     */
+    public BatchLoader<Team, Long> teamLoader() {
+        return batchLoader(Team.class);
+    }
+
+    /**
+     * 팀별 회원 수와 나이 합/평균/최소/최대. 회원을 group by 하지 않고 TeamStats 를 팀 수만큼만 읽는다.
+     * 통계 행이 없는 팀은 회원 0 명이다.
+     */
+    public List<TeamStatsDto> findTeamStats() {
+        return select(new QTeamStatsDto(team.id, team.name,
+                        teamStats.memberCount.coalesce(0L), teamStats.ageSum.coalesce(0L),
+                        teamStats.ageMin, teamStats.ageMax))
+                .from(team)
+                .leftJoin(teamStats).on(teamStats.teamId.eq(team.id))
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+}
@@ -0,0 +1,290 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.config.NPlusOneDetector;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+import study.querydsl.repository.support.BulkChangeEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * Member 엔티티 리스너. 회원 추가/수정(나이, changeTeam)/삭제를 팀별 변화량으로 모았다가
+ * 커밋 직전에 같은 트랜잭션에서 {@link TeamStats} 에 반영한다.
+ * <p>
+ * 회원 update 는 flush 때에야 알 수 있고, 트랜잭션 전에 읽은 회원(open-in-view 등)의 변경은 커밋 flush 에서야 @PreUpdate 가 호출된다.
+ * 커밋 flush 는 Spring 의 beforeCommit 보다 늦으므로, 변화량은 커밋 flush 다음에 실행되는 Hibernate 의
+ * {@link BeforeTransactionCompletionProcess} 로 반영한다.
+ * TeamStats 행은 팀 id 순서로 비관적 락을 잡고 갱신하며, 없으면 {@link TeamStatsRows} 가 만든다.
+ * 수정/삭제 전의 팀과 나이는 영속성 컨텍스트가 읽어온 값(loaded state)을 기준으로 뺀다.
+ * 최소/최대 나이인 회원이 빠진 경우에만 (team_id, age) 인덱스로 최소/최대를 다시 계산한다.
+ * <p>
+ * Querydsl4RepositorySupport 의 벌크 연산은 {@link BulkChangeEvent} 의 회원이 속한 팀(연산 전, 후)을 커밋 직전에 다시 집계한다.
+ * 그 밖의 벌크 연산과 트랜잭션 밖의 변경은 반영되지 않으며 {@link TeamStatsReconciler} 가 주기적으로 맞춘다.
+ */
+@Component
+public class TeamStatsListener {
+
+    private static final NumberExpression<Long> AGE_SUM = Expressions.numberTemplate(Long.class, "sum({0})", member.age);
+    // in 절 파라미터 수 제한을 넘지 않도록 나눠서 조회한다.
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final EntityManager em;
+
+    // 엔티티 리스너는 EntityManagerFactory 를 만드는 중에 생성되므로 공유 EntityManager 는 지연 주입한다.
+    public TeamStatsListener(@Lazy EntityManager em) {
+        this.em = em;
+    }
+
+    @PostPersist
+    public void persisted(Member member) {
+        Changes changes = changes();
+        if (changes != null) {
+            changes.add(teamId(member.getTeam()), member.getAge());
+        }
+    }
+
+    @PreUpdate
+    public void updating(Member member) {
+        Changes changes = changes();
+        if (changes == null) {
+            return;
+        }
+        EntityEntry entry = entry(member);
+        Long oldTeamId = teamId((Team) loadedValue(entry, "team"));
+        int oldAge = (Integer) loadedValue(entry, "age");
+
+        Long newTeamId = teamId(member.getTeam());
+        if (!Objects.equals(oldTeamId, newTeamId) || oldAge != member.getAge()) {
+            changes.remove(oldTeamId, oldAge);
+            changes.add(newTeamId, member.getAge());
+        }
+    }
+
+    @PreRemove
+    public void removing(Member member) {
+        Changes changes = changes();
+        if (changes == null) {
+            return;
+        }
+        // 삭제 전에 바꾼 팀/나이는 update 되지 않고 사라지므로 현재 값이 아닌 읽어온 값으로 뺀다.
+        EntityEntry entry = entry(member);
+        changes.remove(teamId((Team) loadedValue(entry, "team")), (Integer) loadedValue(entry, "age"));
+    }
+
+    /**
+     * 벌크 연산 전의 팀은 지금 읽고, 연산 후의 팀(update 로 팀이 바뀐 경우)은 반영할 때 읽는다.
+     */
+    @EventListener
+    public void bulkChanged(BulkChangeEvent event) {
+        if (event.domainClass() != Member.class) {
+            return;
+        }
+        Changes changes = changes();
+        if (changes == null) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(event.ids().size());
+        event.ids().forEach(id -> ids.add((Long) id));
+        changes.recount.addAll(teamIdsOf(new JPAQueryFactory(em), ids));
+        if (!event.delete()) {
+            changes.bulkUpdated.addAll(ids);
+        }
+    }
+
+    private EntityEntry entry(Member member) {
+        return em.unwrap(SessionImplementor.class).getPersistenceContextInternal().getEntry(member);
+    }
+
+    private Object loadedValue(EntityEntry entry, String property) {
+        EntityMetamodel metamodel = entry.getPersister().getEntityMetamodel();
+        return entry.getLoadedState()[metamodel.getPropertyIndex(property)];
+    }
+
+    private Long teamId(Team team) {
+        // 지연 로딩 프록시여도 id 는 초기화 없이 꺼낼 수 있다.
+        return team == null ? null : team.getId();
+    }
+
+    private Changes changes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            Changes created = new Changes();
+            TransactionSynchronizationManager.bindResource(this, created);
+            // 커밋 flush 중에 처음 호출되어도 등록된 작업은 그 flush 다음에 실행된다.
+            em.unwrap(SessionImplementor.class).getActionQueue()
+                    .registerProcess((BeforeTransactionCompletionProcess) session -> apply(session, created));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TeamStatsListener.this);
+                    created.completed = true;
+                }
+            });
+            changes = created;
+        }
+        return changes;
+    }
+
+    private void apply(SessionImplementor session, Changes changes) {
+        if (changes.completed) {
+            // 롤백된 트랜잭션의 작업이 같은 세션(open-in-view)의 다음 트랜잭션에서 실행되는 경우
+            return;
+        }
+        JPAQueryFactory queryFactory = new JPAQueryFactory(session);
+        Set<Long> recount = new TreeSet<>(changes.recount);
+        recount.addAll(teamIdsOf(queryFactory, changes.bulkUpdated));
+        Map<Long, Delta> deltas = changes.drain();
+        if (deltas.isEmpty() && recount.isEmpty()) {
+            return;
+        }
+
+        Set<Long> teamIds = new TreeSet<>(deltas.keySet());
+        teamIds.addAll(recount);
+        Map<Long, TeamStats> locked = new TreeMap<>();
+        teamIds.forEach(teamId -> locked.put(teamId, TeamStatsRows.lock(session, teamId)));
+
+        // 다시 집계하는 팀은 이 트랜잭션의 엔티티 변경도 집계에 들어 있으므로 변화량을 더하지 않는다.
+        Map<Long, Tuple> actual = aggregate(queryFactory, recount);
+        for (Map.Entry<Long, TeamStats> entry : locked.entrySet()) {
+            Long teamId = entry.getKey();
+            TeamStats stats = entry.getValue();
+            if (recount.contains(teamId)) {
+                Tuple row = actual.get(teamId);
+                if (row == null) {
+                    stats.reset(0, 0, null, null);
+                } else {
+                    stats.reset(row.get(member.count()), row.get(AGE_SUM), row.get(member.age.min()), row.get(member.age.max()));
+                }
+                continue;
+            }
+            Delta delta = deltas.get(teamId);
+            if (stats.apply(delta.count, delta.ageSum, delta.addedMin, delta.addedMax, delta.removedMin, delta.removedMax)) {
+                Tuple bounds = queryFactory
+                        .select(member.age.min(), member.age.max())
+                        .from(member)
+                        .where(member.team.id.eq(teamId))
+                        .fetchOne();
+                stats.changeBounds(bounds.get(member.age.min()), bounds.get(member.age.max()));
+            }
+        }
+        // 커밋 flush 는 이미 끝났으므로 갱신한 통계는 직접 flush 한다.
+        session.flush();
+    }
+
+    private Map<Long, Tuple> aggregate(JPAQueryFactory queryFactory, Collection<Long> teamIds) {
+        Map<Long, Tuple> actual = new HashMap<>();
+        List<Long> ids = new ArrayList<>(teamIds);
+        for (int from = 0; from < ids.size(); from += MAX_BATCH_SIZE) {
+            queryFactory
+                    .select(member.team.id, member.count(), AGE_SUM, member.age.min(), member.age.max())
+                    .from(member)
+                    .where(member.team.id.in(ids.subList(from, Math.min(from + MAX_BATCH_SIZE, ids.size()))))
+                    .groupBy(member.team.id)
+                    .fetch()
+                    .forEach(row -> actual.put(row.get(member.team.id), row));
+        }
+        return actual;
+    }
+
+    private Set<Long> teamIdsOf(JPAQueryFactory queryFactory, Collection<Long> memberIds) {
+        Set<Long> teamIds = new TreeSet<>();
+        List<Long> ids = new ArrayList<>(memberIds);
+        for (int from = 0; from < ids.size(); from += MAX_BATCH_SIZE) {
+            // 회원 id 가 하나면 "where id=?" 모양이 되므로 N+1 감지에서 뺀다.
+            try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                teamIds.addAll(queryFactory
+                        .selectDistinct(member.team.id)
+                        .from(member)
+                        .where(member.id.in(ids.subList(from, Math.min(from + MAX_BATCH_SIZE, ids.size()))),
+                                member.team.isNotNull())
+                        .fetch());
+            }
+        }
+        return teamIds;
+    }
+
+    private static class Changes {
+
+        // 팀 id 순서로 락을 잡아 트랜잭션끼리 교착되지 않게 한다.
+        private Map<Long, Delta> deltas = new TreeMap<>();
+        // 벌크 연산으로 다시 집계할 팀, 팀이 바뀌었을 수 있는 벌크 update 대상 회원
+        private final Set<Long> recount = new TreeSet<>();
+        private final Set<Long> bulkUpdated = new LinkedHashSet<>();
+        private boolean completed;
+
+        void add(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).add(age);
+            }
+        }
+
+        void remove(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).remove(age);
+            }
+        }
+
+        Map<Long, Delta> drain() {
+            Map<Long, Delta> drained = deltas;
+            deltas = new TreeMap<>();
+            return drained;
+        }
+    }
+
+    private static class Delta {
+
+        private long count;
+        private long ageSum;
+        private Integer addedMin;
+        private Integer addedMax;
+        private Integer removedMin;
+        private Integer removedMax;
+
+        void add(int age) {
+            count++;
+            ageSum += age;
+            addedMin = addedMin == null ? age : Math.min(addedMin, age);
+            addedMax = addedMax == null ? age : Math.max(addedMax, age);
+        }
+
+        void remove(int age) {
+            count--;
+            ageSum -= age;
+            removedMin = removedMin == null ? age : Math.min(removedMin, age);
+            removedMax = removedMax == null ? age : Math.max(removedMax, age);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.TeamStats;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * 회원을 팀별로 집계해서 {@link TeamStats} 와 다른 행을 고친다.
+ * 엔티티 리스너를 거치지 않는 벌크 연산이나 트랜잭션 밖의 변경으로 어긋난 값을 맞추기 위한 작업이다.
+ * TeamStats 행에 먼저 락을 잡으므로 그동안 TeamStatsListener 의 반영은 기다린다.
+ * 없는 행은 리스너와 동시에 만들 수 있으므로 {@link TeamStatsRows} 로 만든다.
+ */
+@Slf4j
+@Component
+public class TeamStatsReconciler {
+
+    private static final NumberExpression<Long> AGE_SUM = Expressions.numberTemplate(Long.class, "sum({0})", member.age);
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatsReconciler(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    /**
+     * @return 값이 달랐던 행 수
+     */
+    @Scheduled(fixedDelayString = "${querydsl.team-stats.reconcile-interval:PT10M}",
+            initialDelayString = "${querydsl.team-stats.reconcile-interval:PT10M}")
+    @Transactional
+    public int reconcile() {
+        Map<Long, TeamStats> existing = new HashMap<>();
+        queryFactory
+                .selectFrom(teamStats)
+                .orderBy(teamStats.teamId.asc())
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .fetch()
+                .forEach(stats -> existing.put(stats.getTeamId(), stats));
+
+        List<Tuple> actual = queryFactory
+                .select(member.team.id, member.count(), AGE_SUM, member.age.min(), member.age.max())
+                .from(member)
+                .where(member.team.isNotNull())
+                .groupBy(member.team.id)
+                .orderBy(member.team.id.asc())
+                .fetch();
+
+        int fixed = 0;
+        for (Tuple row : actual) {
+            Long teamId = row.get(member.team.id);
+            long count = row.get(member.count());
+            long ageSum = row.get(AGE_SUM);
+            Integer ageMin = row.get(member.age.min());
+            Integer ageMax = row.get(member.age.max());
+
+            TeamStats stats = existing.remove(teamId);
+            if (stats == null) {
+                stats = TeamStatsRows.lock(em, teamId);
+            } else if (stats.getMemberCount() == count && stats.getAgeSum() == ageSum
+                    && Objects.equals(stats.getAgeMin(), ageMin) && Objects.equals(stats.getAgeMax(), ageMax)) {
+                continue;
+            }
+            stats.reset(count, ageSum, ageMin, ageMax);
+            fixed++;
+        }
+
+        // 회원이 없는 팀(또는 삭제된 팀)의 행은 지운다. 읽을 때 통계가 없으면 회원 0 명으로 본다.
+        for (TeamStats stale : existing.values()) {
+            em.remove(stale);
+            if (stale.getMemberCount() != 0) {
+                fixed++;
+            }
+        }
+
+        if (fixed > 0) {
+            log.warn("Reconciled {} team stats rows", fixed);
+        }
+        return fixed;
+    }
+}
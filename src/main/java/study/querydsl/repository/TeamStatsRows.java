@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.hibernate.Session;
+import study.querydsl.entity.TeamStats;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * {@link TeamStats} 행을 비관적 락으로 읽는다. 행이 없으면 먼저 만든다.
+ * <p>
+ * 없는 행은 PESSIMISTIC_WRITE 로 잠글 수 없으므로, 두 트랜잭션이 같은 팀의 행을 동시에 만들면 한쪽이 커밋할 때 중복 키로 실패한다.
+ * 그래서 행은 savepoint 안에서 JDBC 로 insert 하고, 다른 트랜잭션이 먼저 만들었으면(중복 키) savepoint 로 되돌린 뒤 그 행을 잠근다.
+ * JPA 로 insert 하면 중복 키 예외가 트랜잭션 전체를 rollback-only 로 만들기 때문에 JDBC 를 직접 사용한다.
+ */
+final class TeamStatsRows {
+
+    private static final String INSERT = "insert into team_stats (team_id, member_count, age_sum) values (?, 0, 0)";
+    // SQLState class 23: integrity constraint violation
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private TeamStatsRows() {
+    }
+
+    static TeamStats lock(EntityManager em, Long teamId) {
+        TeamStats stats = em.find(TeamStats.class, teamId, LockModeType.PESSIMISTIC_WRITE);
+        if (stats != null) {
+            return stats;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                statement.setLong(1, teamId);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (e.getSQLState() == null || !e.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                return;
+            }
+            connection.releaseSavepoint(savepoint);
+        });
+        return em.find(TeamStats.class, teamId, LockModeType.PESSIMISTIC_WRITE);
+    }
+}
@@ -0,0 +1,16 @@
+package study.querydsl.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import study.querydsl.dto.UsernameMatch;
+
+/**
+ * PREFIX, CONTAINS 이름 검색이 username 인덱스 max-hits 보다 많이 일치한다. 검색어를 더 구체적으로 보내야 하므로 400 으로 응답한다.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UsernameSearchTooBroadException extends IllegalArgumentException {
+
+    public UsernameSearchTooBroadException(String username, UsernameMatch match, int maxHits) {
+        super("Username " + match + " search for '" + username + "' matches more than " + maxHits + " members");
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import org.hibernate.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 조회를 요청 스레드가 아닌 전용 스레드 풀에서 실행한다.
+ * <ul>
+ *     <li>{@link #supply}: 작업마다 새 읽기 전용 트랜잭션(= 별도 EntityManager, 커넥션)에서 실행하고 CompletableFuture 로 돌려준다.</li>
+ *     <li>{@link #stream}: 구독마다 EntityManager 를 직접 열어 Stream 을 Flux 로 흘려보내고, 완료/취소/에러 시 닫는다.</li>
+ * </ul>
+ * 스레드 수(querydsl.async.threads)와 대기열(querydsl.async.queue-capacity)이 모두 차면 RejectedExecutionException 으로 실패한다.
+ * 작업마다 커넥션을 하나씩 사용하므로 스레드 수는 커넥션 풀 크기보다 작게 잡는다.
+ * <p>
+ * {@link #stream} 은 여러 스레드에서 이어서 읽을 수 있도록 스프링 트랜잭션 동기화를 사용하지 않는다.
+ * 그래서 replica 라우팅({@code ReplicaRoutingDataSource})은 적용되지 않고 primary 에서 읽는다.
+ */
+@Component
+public class AsyncQueryExecutor implements DisposableBean {
+
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+
+    public AsyncQueryExecutor(EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.async.threads:8}") int threads,
+                              @Value("${querydsl.async.queue-capacity:100}") int queueCapacity) {
+        this.emf = emf;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "async-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor, "async-query");
+    }
+
+    /**
+     * @param query 공유 EntityManager(리포지토리에 주입된 것)로 조회하는 작업. 호출한 쪽 트랜잭션은 이어지지 않는다.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        try {
+            return CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @param query 넘겨받은 EntityManager 로 Stream 을 여는 작업. 다음 요소는 구독자가 요청할 때만 읽는다.
+     */
+    public <T> Flux<T> stream(Function<EntityManager, Stream<T>> query) {
+        return Flux.using(this::openSession,
+                        session -> Flux.fromStream(() -> query.apply(session.em)),
+                        StreamSession::close)
+                .subscribeOn(scheduler);
+    }
+
+    private StreamSession openSession() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            return new StreamSession(em);
+        } catch (RuntimeException e) {
+            em.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+        executor.shutdownNow();
+    }
+
+    private static class StreamSession {
+
+        private final EntityManager em;
+        private final EntityTransaction transaction;
+
+        private StreamSession(EntityManager em) {
+            this.em = em;
+            this.transaction = em.getTransaction();
+        }
+
+        private void close() {
+            try {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            } finally {
+                em.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.config.NPlusOneDetector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * DataLoader 방식으로 id 조회를 모았다가 "where id in (...)" 한 번으로 읽는다.
+ * <pre>
+ * members.forEach(m -> loader.load(m.getTeam().getId()).thenAccept(...));
+ * loader.dispatch();  // 모인 id 를 쿼리 한 번으로 조회
+ * </pre>
+ * 한 번 읽은 엔티티는 loader 에 캐시되고, {@link BatchLoaderRegistry} 가 요청(또는 트랜잭션) 단위로 loader 를 공유한다.
+ * 같은 영속성 컨텍스트에 있던 지연 로딩 프록시도 조회된 엔티티로 초기화되므로 이후 접근에서 쿼리가 나가지 않는다.
+ * 요청 스레드 하나에서 사용한다고 가정하며 thread-safe 하지 않다.
+ */
+public class BatchLoader<T, ID> {
+
+    // in 절 파라미터 수 제한을 넘지 않도록 나눠서 조회한다.
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final JPAQueryFactory queryFactory;
+    private final EntityPath<T> entityPath;
+    private final SimpleExpression<ID> idPath;
+    private final Function<Object, ID> identifier;
+    private final Map<ID, CompletableFuture<T>> loaded = new HashMap<>();
+    private final Map<ID, CompletableFuture<T>> pending = new LinkedHashMap<>();
+
+    BatchLoader(JPAQueryFactory queryFactory, EntityPath<T> entityPath, SimpleExpression<ID> idPath,
+                Function<Object, ID> identifier) {
+        this.queryFactory = queryFactory;
+        this.entityPath = entityPath;
+        this.idPath = idPath;
+        this.identifier = identifier;
+    }
+
+    /**
+     * 조회를 예약한다. {@link #dispatch()} 가 호출되면 완료되며, 없는 id 는 null 로 완료된다.
+     */
+    public CompletableFuture<T> load(ID id) {
+        CompletableFuture<T> future = loaded.get(id);
+        if (future == null) {
+            future = new CompletableFuture<>();
+            loaded.put(id, future);
+            pending.put(id, future);
+        }
+        return future;
+    }
+
+    /**
+     * 예약된 id 를 모두 조회한다.
+     */
+    public void dispatch() {
+        while (!pending.isEmpty()) {
+            Map<ID, CompletableFuture<T>> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<ID, CompletableFuture<T>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                Map.Entry<ID, CompletableFuture<T>> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+
+            List<T> found;
+            // id 가 하나면 "where id=?" 가 되어 지연 로딩과 모양이 같으므로 N+1 감지에서 뺀다.
+            try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                found = queryFactory
+                        .selectFrom(entityPath)
+                        .where(idPath.in(batch.keySet()))
+                        .fetch();
+            } catch (RuntimeException e) {
+                // 실패한 id 는 캐시에서 빼서 다음 load 에서 다시 조회할 수 있게 한다.
+                batch.keySet().forEach(loaded::remove);
+                batch.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            }
+            Map<ID, T> byId = new HashMap<>();
+            found.forEach(entity -> byId.put(identifier.apply(entity), entity));
+            batch.forEach((id, future) -> future.complete(byId.get(id)));
+        }
+    }
+
+    /**
+     * id 들을 한 번에 조회한다. 이미 읽은 id 는 다시 조회하지 않는다.
+     *
+     * @return 조회된 엔티티 (없는 id 는 포함하지 않는다)
+     */
+    public Map<ID, T> loadMany(Collection<ID> ids) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(ids.size());
+        ids.forEach(id -> futures.add(load(id)));
+        dispatch();
+
+        Map<ID, T> result = new LinkedHashMap<>();
+        for (CompletableFuture<T> future : futures) {
+            T entity = future.join();
+            if (entity != null) {
+                result.put(identifier.apply(entity), entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * source 들의 @ManyToOne 연관 엔티티를 한 번에 초기화한다. (예: resolve(members, Member::getTeam))
+     * 연관 엔티티가 지연 로딩 프록시여도 id 만 꺼내므로 프록시 초기화 쿼리는 나가지 않는다.
+     */
+    public <S> Map<ID, T> resolve(Collection<S> sources, Function<S, T> association) {
+        List<ID> ids = sources.stream()
+                .map(association)
+                .filter(Objects::nonNull)
+                .map(identifier)
+                .distinct()
+                .toList();
+        return loadMany(ids);
+    }
+}
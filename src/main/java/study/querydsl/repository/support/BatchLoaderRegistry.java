@@ -0,0 +1,91 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 엔티티 타입별 {@link BatchLoader} 를 요청 단위로 공유한다.
+ * 웹 요청 안이면 요청 속성에, 아니면 현재 트랜잭션에 묶는다. 둘 다 없으면 호출할 때마다 새 loader 를 만든다.
+ * <p>
+ * 캐시된 엔티티는 처음 읽은 영속성 컨텍스트에 속한다.
+ * open-in-view 를 끄고 요청 안에서 트랜잭션을 여러 번 열면 뒤의 트랜잭션에서는 준영속 상태로 보인다.
+ */
+@Component
+public class BatchLoaderRegistry {
+
+    private static final String ATTRIBUTE = BatchLoaderRegistry.class.getName();
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public BatchLoaderRegistry(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T, ID> BatchLoader<T, ID> loader(Class<T> domainClass) {
+        Map<Class<?>, BatchLoader<?, ?>> loaders = currentLoaders();
+        if (loaders == null) {
+            return create(domainClass);
+        }
+        return (BatchLoader<T, ID>) loaders.computeIfAbsent(domainClass, this::create);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T, ID> BatchLoader<T, ID> create(Class<T> domainClass) {
+        JpaEntityInformation<T, ?> entityInformation = JpaEntityInformationSupport.getEntityInformation(domainClass, em);
+        EntityPath<T> path = SimpleEntityPathResolver.INSTANCE.createPath(domainClass);
+        PathBuilder<T> entityPath = new PathBuilder<>(path.getType(), path.getMetadata());
+        Class<ID> idType = (Class<ID>) entityInformation.getIdType();
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        return new BatchLoader<>(queryFactory, entityPath,
+                entityPath.get(entityInformation.getIdAttribute().getName(), idType),
+                entity -> (ID) util.getIdentifier(entity));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Class<?>, BatchLoader<?, ?>> currentLoaders() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Map<Class<?>, BatchLoader<?, ?>> loaders =
+                    (Map<Class<?>, BatchLoader<?, ?>>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (loaders == null) {
+                loaders = new HashMap<>();
+                attributes.setAttribute(ATTRIBUTE, loaders, RequestAttributes.SCOPE_REQUEST);
+            }
+            return loaders;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Class<?>, BatchLoader<?, ?>> loaders =
+                (Map<Class<?>, BatchLoader<?, ?>>) TransactionSynchronizationManager.getResource(this);
+        if (loaders == null) {
+            loaders = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, loaders);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BatchLoaderRegistry.this);
+                }
+            });
+        }
+        return loaders;
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+
+/**
+ * {@link Querydsl4RepositorySupport} 의 청크 단위 벌크 update/delete 가 청크를 실행하기 직전에 발행된다.
+ * 청크 트랜잭션 안에서 동기적으로 전달되므로 리스너는 트랜잭션 동기화로 커밋 전/후 작업을 등록할 수 있다.
+ * 벌크 연산은 엔티티 리스너를 거치지 않으므로 엔티티 리스너로 맞추는 값(count 캐시 등)은 이 이벤트로도 맞춘다.
+ *
+ * @param domainClass 변경되는 엔티티 타입
+ * @param ids         이번 청크에서 변경(삭제)되는 엔티티 id
+ * @param delete      delete 면 true, update 면 false
+ */
+public record BulkChangeEvent(Class<?> domainClass, List<?> ids, boolean delete) {
+}
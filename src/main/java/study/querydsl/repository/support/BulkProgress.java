@@ -0,0 +1,12 @@
+package study.querydsl.repository.support;
+
+/**
+ * 청크 단위 벌크 연산 진행 상황
+ *
+ * @param chunk     처리한 청크 번호 (1 부터)
+ * @param chunkRows 이번 청크에서 변경된 행 수
+ * @param totalRows 지금까지 변경된 행 수
+ * @param lastId    이번 청크의 마지막 id. 다음 청크는 이 id 다음부터 시작한다.
+ */
+public record BulkProgress(int chunk, long chunkRows, long totalRows, Object lastId) {
+}
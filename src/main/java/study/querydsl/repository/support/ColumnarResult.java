@@ -0,0 +1,228 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 숫자 projection 결과를 열(column) 단위 primitive 배열로 담는다.
+ * <p>
+ * Tuple 이나 List&lt;Long&gt; 로 모으면 행마다 Tuple, Object[], 박싱된 숫자가 결과 크기만큼 남는다.
+ * 여기서는 Hibernate scroll(FORWARD_ONLY)로 한 행씩 읽어서 바로 int[], long[], double[] 에 옮기므로
+ * 수백만 행이어도 열마다 배열 하나만 남는다.
+ * <ul>
+ *     <li>Integer, Short, Byte -> int[]</li>
+ *     <li>Long -> long[]</li>
+ *     <li>Double, Float, BigDecimal -> double[]</li>
+ *     <li>그 외(group by 키 등) -> Object[]</li>
+ * </ul>
+ * null 은 0 으로 저장하고 {@link #isNull(Expression, int)} 로 구분한다.
+ */
+public final class ColumnarResult {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final Expression<?>[] columns;
+    private final Object[] values;
+    private final BitSet[] nulls;
+    private final int size;
+
+    private ColumnarResult(Expression<?>[] columns, Object[] values, BitSet[] nulls, int size) {
+        this.columns = columns;
+        this.values = values;
+        this.nulls = nulls;
+        this.size = size;
+    }
+
+    /**
+     * query 의 from, where, group by 는 그대로 두고 select 절만 columns 로 바꿔 실행한다.
+     */
+    public static ColumnarResult fetch(JPAQuery<?> query, Expression<?>... columns) {
+        Assert.notEmpty(columns, "Columns must not be empty!");
+        // Projections.tuple 같은 FactoryExpression 은 행마다 Tuple 을 만들므로 쉼표로 나열한 select 로 실행한다.
+        JPAQuery<?> select = query.clone().select(columns.length == 1 ? columns[0] : Expressions.list(columns));
+
+        ColumnBuffer[] buffers = new ColumnBuffer[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            buffers[i] = ColumnBuffer.of(columns[i].getType());
+        }
+
+        int size = 0;
+        Query<?> hibernateQuery = select.createQuery().unwrap(Query.class)
+                .setReadOnly(true)
+                .setFetchSize(DEFAULT_FETCH_SIZE);
+        try (ScrollableResults<?> rows = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                Object row = rows.get();
+                if (columns.length == 1) {
+                    buffers[0].add(size, row);
+                } else {
+                    Object[] cells = (Object[]) row;
+                    for (int i = 0; i < cells.length; i++) {
+                        buffers[i].add(size, cells[i]);
+                    }
+                }
+                size++;
+            }
+        }
+
+        Object[] values = new Object[columns.length];
+        BitSet[] nulls = new BitSet[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = buffers[i].toArray(size);
+            nulls[i] = buffers[i].nulls;
+        }
+        return new ColumnarResult(columns.clone(), values, nulls, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] getInts(Expression<?> column) {
+        return column(column, int[].class);
+    }
+
+    public long[] getLongs(Expression<?> column) {
+        return column(column, long[].class);
+    }
+
+    public double[] getDoubles(Expression<?> column) {
+        return column(column, double[].class);
+    }
+
+    public Object[] getObjects(Expression<?> column) {
+        return column(column, Object[].class);
+    }
+
+    public boolean isNull(Expression<?> column, int row) {
+        return nulls[indexOf(column)].get(row);
+    }
+
+    private <A> A column(Expression<?> column, Class<A> arrayType) {
+        Object array = values[indexOf(column)];
+        if (!arrayType.isInstance(array)) {
+            throw new IllegalArgumentException(column + " is stored as " + array.getClass().getSimpleName()
+                    + ", not " + arrayType.getSimpleName());
+        }
+        return arrayType.cast(array);
+    }
+
+    private int indexOf(Expression<?> column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(column + " is not a column of this result");
+    }
+
+    private abstract static class ColumnBuffer {
+
+        private final BitSet nulls = new BitSet();
+
+        static ColumnBuffer of(Class<?> type) {
+            if (type == Integer.class || type == Short.class || type == Byte.class) {
+                return new IntBuffer();
+            }
+            if (type == Long.class) {
+                return new LongBuffer();
+            }
+            if (type == Double.class || type == Float.class || type == BigDecimal.class) {
+                return new DoubleBuffer();
+            }
+            return new ObjectBuffer();
+        }
+
+        void add(int row, Object value) {
+            if (value == null) {
+                nulls.set(row);
+            }
+            append(row, value);
+        }
+
+        abstract void append(int row, Object value);
+
+        abstract Object toArray(int size);
+
+        static int grow(int length) {
+            return Math.max(16, length * 2);
+        }
+    }
+
+    private static final class IntBuffer extends ColumnBuffer {
+        private int[] values = new int[0];
+
+        @Override
+        void append(int row, Object value) {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(row));
+            }
+            values[row] = value == null ? 0 : ((Number) value).intValue();
+        }
+
+        @Override
+        Object toArray(int size) {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class LongBuffer extends ColumnBuffer {
+        private long[] values = new long[0];
+
+        @Override
+        void append(int row, Object value) {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(row));
+            }
+            values[row] = value == null ? 0 : ((Number) value).longValue();
+        }
+
+        @Override
+        Object toArray(int size) {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleBuffer extends ColumnBuffer {
+        private double[] values = new double[0];
+
+        @Override
+        void append(int row, Object value) {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(row));
+            }
+            values[row] = value == null ? 0 : ((Number) value).doubleValue();
+        }
+
+        @Override
+        Object toArray(int size) {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class ObjectBuffer extends ColumnBuffer {
+        private Object[] values = new Object[0];
+
+        @Override
+        void append(int row, Object value) {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(row));
+            }
+            values[row] = value;
+        }
+
+        @Override
+        Object toArray(int size) {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import org.springframework.util.Assert;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * content 쿼리로부터 count 쿼리를 만든다.
+ * <ul>
+ *     <li>order by, offset/limit, fetch join 을 제거한다.</li>
+ *     <li>where 절과 남은 join 에서 참조하지 않는 to-one left join 은 row 수를 바꾸지 않으므로 제거한다.</li>
+ *     <li>select 절은 count(root) 로 바꾼다. (hibernate 는 count(root.id) 로 변환한다)</li>
+ *     <li>distinct 쿼리는 count(distinct projection) 으로 바꾸므로 projection 이 참조하는 join 도 남긴다.</li>
+ * </ul>
+ * group by 가 있는 쿼리는 지원하지 않는다.
+ */
+public final class CountQueryBuilder {
+
+    private CountQueryBuilder() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static JPAQuery<Long> build(EntityManager entityManager, JPAQuery<?> contentQuery) {
+        QueryMetadata source = contentQuery.getMetadata();
+        Assert.isTrue(source.getGroupBy().isEmpty(), "Group by queries are not supported!");
+
+        List<JoinExpression> joins = source.getJoins();
+        Set<Expression<?>> referenced = new HashSet<>();
+        collectRoots(source.getWhere(), referenced);
+        if (source.isDistinct()) {
+            collectRoots(source.getProjection(), referenced);
+        }
+
+        // 뒤에서부터 보면서 남기는 join 이 참조하는 alias 를 추가해야 앞쪽 join 의 제거 여부를 판단할 수 있다.
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && isRemovable(join, referenced)) {
+                continue;
+            }
+            keep[i] = true;
+            collectRoots(join.getTarget(), referenced);
+            collectRoots(join.getCondition(), referenced);
+        }
+
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        for (int i = 0; i < joins.size(); i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            JoinExpression join = joins.get(i);
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (QueryFlag flag : source.getFlags()) {
+            metadata.addFlag(flag);
+        }
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            metadata.setParam((ParamExpression) param.getKey(), param.getValue());
+        }
+
+        Expression<?> root = joins.get(0).getTarget();
+        if (source.isDistinct()) {
+            Expression<?> projection = source.getProjection();
+            Assert.isTrue(!(projection instanceof FactoryExpression), "Distinct queries with multiple columns are not supported!");
+            metadata.setProjection(Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, projection));
+        } else {
+            metadata.setProjection(Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_AGG, root));
+        }
+        return new JPAQuery<>(entityManager, metadata);
+    }
+
+    private static boolean isRemovable(JoinExpression join, Set<Expression<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN) {
+            return false;
+        }
+        if (!(join.getTarget() instanceof Operation<?> target) || target.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = target.getArg(0);
+        if (!(association instanceof Path) || association instanceof CollectionExpression || association instanceof MapExpression) {
+            return false;
+        }
+        return !referenced.contains(target.getArg(1));
+    }
+
+    private static void collectRoots(Expression<?> expression, Set<Expression<?>> roots) {
+        if (expression != null) {
+            expression.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    private static final class RootCollector implements Visitor<Void, Set<Expression<?>>> {
+
+        private static final RootCollector INSTANCE = new RootCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collectRoots(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collectRoots(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        // 상관 서브쿼리는 바깥 alias 를 참조할 수 있으므로 서브쿼리 전체를 살펴본다.
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            }
+            collectRoots(metadata.getWhere(), roots);
+            collectRoots(metadata.getHaving(), roots);
+            collectRoots(metadata.getProjection(), roots);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression<?> expression) {
+                    collectRoots(expression, roots);
+                }
+            }
+            return null;
+        }
+    }
+}
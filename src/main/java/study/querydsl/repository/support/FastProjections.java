@@ -0,0 +1,251 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link com.querydsl.core.types.Projections} 의 bean, fields, constructor 와 같은 규칙으로 DTO 를 만들지만
+ * 행마다 리플렉션을 호출하지 않는다.
+ * <p>
+ * DTO 타입과 프로퍼티 조합별로 한 번만 LambdaMetafactory 로 생성자, setter 호출 람다를 만들어 두고,
+ * 필드 직접 대입과 생성자 호출은 MethodHandle 을 사용한다.
+ * bean, fields 는 Projections 와 마찬가지로 null 값은 대입하지 않는다.
+ */
+public final class FastProjections {
+
+    private static final Map<List<Object>, Function<Object[], ?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private FastProjections() {
+    }
+
+    /**
+     * 기본 생성자 + setter
+     */
+    public static <T> FactoryExpression<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        return create(Style.BEAN, type, exprs);
+    }
+
+    /**
+     * 기본 생성자 + 필드 직접 대입
+     */
+    public static <T> FactoryExpression<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+        return create(Style.FIELDS, type, exprs);
+    }
+
+    /**
+     * 인자 타입이 맞는 생성자
+     */
+    public static <T> FactoryExpression<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+        return create(Style.CONSTRUCTOR, type, exprs);
+    }
+
+    private enum Style {
+        BEAN, FIELDS, CONSTRUCTOR
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> FactoryExpression<T> create(Style style, Class<? extends T> type, Expression<?>... exprs) {
+        List<Expression<?>> args = new ArrayList<>(exprs.length);
+        List<Object> key = new ArrayList<>(exprs.length + 2);
+        key.add(style);
+        key.add(type);
+        for (Expression<?> expr : exprs) {
+            // Projections 처럼 별칭(as)은 프로퍼티 이름으로만 쓰고 select 절에는 원래 식을 넣는다.
+            if (expr instanceof Operation<?> operation && operation.getOperator() == Ops.ALIAS) {
+                args.add(operation.getArg(0));
+                key.add(style == Style.CONSTRUCTOR ? operation.getArg(0).getType() : propertyName(operation.getArg(1)));
+            } else {
+                args.add(expr);
+                key.add(style == Style.CONSTRUCTOR ? expr.getType() : propertyName(expr));
+            }
+        }
+
+        Function<Object[], T> mapper = (Function<Object[], T>) MAPPERS.computeIfAbsent(key, k -> compile(style, type, k));
+        return new FastProjection<>((Class<T>) type, args, mapper);
+    }
+
+    private static String propertyName(Expression<?> expr) {
+        if (expr instanceof Path<?> path) {
+            return path.getMetadata().getName();
+        }
+        throw new IllegalArgumentException("Unsupported expression " + expr + ", use a path or an alias");
+    }
+
+    // key = [style, type, 프로퍼티 이름 또는 인자 타입...]
+    private static <T> Function<Object[], T> compile(Style style, Class<T> type, List<Object> key) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            List<Object> properties = key.subList(2, key.size());
+            return switch (style) {
+                case CONSTRUCTOR -> constructorMapper(lookup, type, properties);
+                case BEAN, FIELDS -> propertyMapper(lookup, style, type, properties);
+            };
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create projection for " + type.getName() + " " + key, e);
+        }
+    }
+
+    private static <T> Function<Object[], T> constructorMapper(MethodHandles.Lookup lookup, Class<T> type,
+                                                               List<Object> argTypes) throws ReflectiveOperationException {
+        Constructor<?> constructor = Arrays.stream(type.getDeclaredConstructors())
+                .filter(c -> matches(c.getParameterTypes(), argTypes))
+                .findFirst()
+                .orElseThrow(() -> new NoSuchMethodException(type.getName() + ".<init>" + argTypes));
+        MethodHandle handle = lookup.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, argTypes.size())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return args -> {
+            try {
+                return type.cast(handle.invokeExact(args));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static boolean matches(Class<?>[] parameterTypes, List<Object> argTypes) {
+        if (parameterTypes.length != argTypes.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[i]);
+            if (!parameterType.isAssignableFrom((Class<?>) argTypes.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<Object[], T> propertyMapper(MethodHandles.Lookup lookup, Style style, Class<T> type,
+                                                            List<Object> properties) throws ReflectiveOperationException {
+        Supplier<T> instantiator = (Supplier<T>) lambda(lookup, Supplier.class, "get",
+                MethodType.methodType(Object.class),
+                lookup.findConstructor(type, MethodType.methodType(void.class)),
+                MethodType.methodType(type));
+
+        BiConsumer<Object, Object>[] writers = new BiConsumer[properties.size()];
+        for (int i = 0; i < writers.length; i++) {
+            String property = (String) properties.get(i);
+            writers[i] = style == Style.BEAN ? setter(lookup, type, property) : fieldWriter(lookup, type, property);
+        }
+
+        return args -> {
+            T instance = instantiator.get();
+            for (int i = 0; i < writers.length; i++) {
+                if (args[i] != null) {
+                    writers[i].accept(instance, args[i]);
+                }
+            }
+            return instance;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Class<?> type, String property)
+            throws ReflectiveOperationException {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Class<?> propertyType = findField(type, property).getType();
+        MethodHandle setter = lookup.findVirtual(type, name, MethodType.methodType(void.class, propertyType));
+        return (BiConsumer<Object, Object>) lambda(lookup, BiConsumer.class, "accept",
+                MethodType.methodType(void.class, Object.class, Object.class),
+                setter,
+                MethodType.methodType(void.class, type, ClassUtils.resolvePrimitiveIfNecessary(propertyType)));
+    }
+
+    private static BiConsumer<Object, Object> fieldWriter(MethodHandles.Lookup lookup, Class<?> type, String property)
+            throws ReflectiveOperationException {
+        Field field = findField(type, property);
+        if (Modifier.isFinal(field.getModifiers())) {
+            throw new IllegalAccessException("Final field " + field);
+        }
+        MethodHandle handle = lookup.unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, value) -> {
+            try {
+                handle.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Field findField(Class<?> type, String property) throws NoSuchFieldException {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(property) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + "." + property);
+    }
+
+    private static Object lambda(MethodHandles.Lookup lookup, Class<?> functionalInterface, String method,
+                                 MethodType erasedType, MethodHandle implementation, MethodType instantiatedType)
+            throws ReflectiveOperationException {
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, method,
+                    MethodType.methodType(functionalInterface), erasedType, implementation, instantiatedType);
+            return site.getTarget().invoke();
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class FastProjection<T> extends FactoryExpressionBase<T> {
+
+        private final List<Expression<?>> args;
+        private final Function<Object[], T> mapper;
+
+        private FastProjection(Class<T> type, List<Expression<?>> args, Function<Object[], T> mapper) {
+            super(type);
+            this.args = List.copyOf(args);
+            this.mapper = mapper;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        public T newInstance(Object... args) {
+            return mapper.apply(args);
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.repository.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 페이징 content 쿼리와 count 쿼리를 동시에 실행한다. (querydsl.count.parallel.enabled=true)
+ * <p>
+ * count 는 별도 스레드의 새 읽기 전용 트랜잭션(= 별도 EntityManager, 커넥션)에서 실행되므로
+ * 페이지 응답 시간이 content + count 에서 max(content, count) 로 줄어든다.
+ * content 결과만으로 total 을 알 수 있으면(PageableExecutionUtils 와 같은 규칙) 실행 중인 count 는 취소한다.
+ * <p>
+ * 두 쿼리는 서로 다른 트랜잭션이라 같은 스냅샷을 보지는 않는다. 동시에 쓰기가 있으면 count 가 content 와 조금 어긋날 수 있다.
+ * 요청 하나가 커넥션을 두 개 사용하므로 풀 크기에 여유가 있을 때만 켠다.
+ * 설정이 꺼져 있거나 count 스레드가 모두 사용 중이면 기존처럼 순서대로 실행한다.
+ */
+@Component
+public class ParallelCountExecutor implements DisposableBean {
+
+    private final boolean enabled;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate countTransaction;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelCountExecutor(EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                                 @Value("${querydsl.count.parallel.enabled:false}") boolean enabled,
+                                 @Value("${querydsl.count.parallel.threads:4}") int threads) {
+        this.enabled = enabled;
+        this.emf = emf;
+        this.countTransaction = new TransactionTemplate(transactionManager);
+        this.countTransaction.setReadOnly(true);
+        this.countTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-count-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param content 호출한 스레드(호출한 쪽 트랜잭션)에서 실행
+     * @param count   별도 스레드, 별도 읽기 전용 트랜잭션에서 실행. count 쿼리는 공유 EntityManager 로 만들어져 있어야 한다.
+     */
+    public <T> Page<T> getPage(Supplier<List<T>> content, Pageable pageable, LongSupplier count) {
+        if (!enabled || pageable.isUnpaged()) {
+            return PageableExecutionUtils.getPage(content.get(), pageable, count);
+        }
+
+        CountTask task = submit(count);
+        if (task == null) {
+            return PageableExecutionUtils.getPage(content.get(), pageable, count);
+        }
+
+        try {
+            return PageableExecutionUtils.getPage(content.get(), pageable, task::await);
+        } finally {
+            // total 을 content 로 계산했거나 content 쿼리가 실패한 경우
+            task.cancel();
+        }
+    }
+
+    private CountTask submit(LongSupplier count) {
+        CountTask task = new CountTask();
+        try {
+            task.future = executor.submit(() -> countTransaction.execute(status -> {
+                task.session.set(EntityManagerFactoryUtils.getTransactionalEntityManager(emf).unwrap(Session.class));
+                try {
+                    return count.getAsLong();
+                } finally {
+                    task.session.set(null);
+                }
+            }));
+            return task;
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class CountTask {
+
+        private final AtomicReference<Session> session = new AtomicReference<>();
+        private Future<Long> future;
+
+        long await() {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new CancellationException("Interrupted while waiting for count query");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        void cancel() {
+            if (future.isDone()) {
+                return;
+            }
+            // 아직 시작 전이면 실행되지 않고, 실행 중이면 JDBC Statement.cancel 로 DB 쪽 쿼리를 중단한다.
+            future.cancel(false);
+            Session running = session.get();
+            if (running != null) {
+                try {
+                    running.cancelQuery();
+                } catch (RuntimeException e) {
+                    // 이미 끝났거나 드라이버가 취소를 지원하지 않으면 결과만 버린다.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * where 절의 모양을 값 없이 문자열로 만든다. ex) member1.age:GOE+member1.username:EQ
+ * 같은 조건 조합이면 값이 달라도 같은 문자열이 되므로 metric tag 로 사용할 수 있다.
+ */
+public final class PredicateShape {
+
+    private PredicateShape() {
+    }
+
+    public static String of(Predicate predicate) {
+        if (predicate == null) {
+            return "none";
+        }
+        Set<String> conditions = new TreeSet<>();
+        predicate.accept(ConditionCollector.INSTANCE, conditions);
+        return conditions.isEmpty() ? "none" : String.join("+", conditions);
+    }
+
+    private static final class ConditionCollector implements Visitor<Void, Set<String>> {
+
+        private static final ConditionCollector INSTANCE = new ConditionCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<String> conditions) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<String> conditions) {
+            expr.getArgs().forEach(arg -> arg.accept(this, conditions));
+            return null;
+        }
+
+        // path 와 값을 비교하는 연산이면 "path:연산자" 를 남기고, and/or 같은 연산이면 하위 조건을 살펴본다.
+        @Override
+        public Void visit(Operation<?> expr, Set<String> conditions) {
+            Path<?> path = null;
+            for (Expression<?> arg : expr.getArgs()) {
+                if (arg instanceof Path<?> p && path == null) {
+                    path = p;
+                } else if (!(arg instanceof Constant || arg instanceof ParamExpression)) {
+                    expr.getArgs().forEach(child -> child.accept(this, conditions));
+                    return null;
+                }
+            }
+            if (path != null) {
+                conditions.add(path + ":" + expr.getOperator());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<String> conditions) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<String> conditions) {
+            conditions.add(expr.toString());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<String> conditions) {
+            conditions.add("subquery");
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<String> conditions) {
+            conditions.add(expr.getTemplate().toString());
+            return null;
+        }
+    }
+}
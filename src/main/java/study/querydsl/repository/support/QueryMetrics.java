@@ -0,0 +1,73 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * repository 쿼리 실행 시간과 조회 건수 측정
+ * <ul>
+ *     <li>querydsl.query: repository, method, phase(content/count/page), shape 별 실행 시간</li>
+ *     <li>querydsl.query.rows: repository, method, shape 별 조회 건수</li>
+ * </ul>
+ * shape 는 where 절에 어떤 조건이 들어갔는지를 나타내며, 어느 필터 조합이 느린지 확인하는 용도다.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String QUERY_TIMER = "querydsl.query";
+    public static final String ROWS_SUMMARY = "querydsl.query.rows";
+
+    private final MeterRegistry registry;
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<List<String>, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> List<T> content(String repository, String method, String shape, Supplier<List<T>> query) {
+        List<T> result = timer(repository, method, "content", shape).record(query);
+        rows(repository, method, shape).record(result.size());
+        return result;
+    }
+
+    public long count(String repository, String method, String shape, LongSupplier query) {
+        return timer(repository, method, "count", shape).record(query::getAsLong);
+    }
+
+    /**
+     * content 와 count 를 한 번에 가져오는 경우(윈도우 함수 페이징)
+     */
+    public <T> Page<T> page(String repository, String method, String shape, Supplier<Page<T>> query) {
+        Page<T> result = timer(repository, method, "page", shape).record(query);
+        rows(repository, method, shape).record(result.getNumberOfElements());
+        return result;
+    }
+
+    private Timer timer(String repository, String method, String phase, String shape) {
+        return timers.computeIfAbsent(List.of(repository, method, phase, shape), key -> Timer.builder(QUERY_TIMER)
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("phase", phase)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private DistributionSummary rows(String repository, String method, String shape) {
+        return rows.computeIfAbsent(List.of(repository, method, shape), key -> DistributionSummary.builder(ROWS_SUMMARY)
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("shape", shape)
+                .register(registry));
+    }
+}
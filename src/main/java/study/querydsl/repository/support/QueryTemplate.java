@@ -0,0 +1,80 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionUtils;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 미리 JPQL 로 직렬화해 둔 쿼리
+ * 값이 바뀌는 부분은 {@link com.querydsl.core.types.dsl.Param} 으로 만들어 두고,
+ * 실행할 때는 표현식 트리 생성과 직렬화 없이 파라미터 값만 바인딩한다.
+ * 같은 JPQL 문자열을 재사용하므로 hibernate 의 query plan cache 도 항상 hit 된다.
+ */
+public final class QueryTemplate<T> {
+
+    private final String jpql;
+    private final List<Object> constants;
+    private final Expression<T> projection;
+    private final QueryModifiers modifiers;
+
+    private QueryTemplate(String jpql, List<Object> constants, Expression<T> projection, QueryModifiers modifiers) {
+        this.jpql = jpql;
+        this.constants = constants;
+        this.projection = projection;
+        this.modifiers = modifiers;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> QueryTemplate<T> compile(EntityManager entityManager, JPAQuery<T> query) {
+        QueryMetadata metadata = query.getMetadata();
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(entityManager), entityManager);
+        serializer.serialize(metadata, false, null);
+
+        Expression<T> projection = (Expression<T>) metadata.getProjection();
+        if (projection instanceof FactoryExpression<?> factory) {
+            projection = (Expression<T>) FactoryExpressionUtils.wrap(factory);
+        }
+        return new QueryTemplate<>(serializer.toString(), List.copyOf(serializer.getConstants()),
+                projection, metadata.getModifiers());
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> fetch(EntityManager entityManager, Map<ParamExpression<?>, Object> params) {
+        Query query = entityManager.createQuery(jpql);
+        JPAUtil.setConstants(query, constants, params);
+        if (modifiers.getLimit() != null) {
+            query.setMaxResults(Math.toIntExact(modifiers.getLimit()));
+        }
+        if (modifiers.getOffset() != null) {
+            query.setFirstResult(Math.toIntExact(modifiers.getOffset()));
+        }
+
+        List<?> rows = query.getResultList();
+        if (!(projection instanceof FactoryExpression<?> factory)) {
+            return (List<T>) rows;
+        }
+        List<T> results = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] args = row instanceof Object[] array ? array : new Object[]{row};
+            results.add((T) factory.newInstance(args));
+        }
+        return results;
+    }
+}
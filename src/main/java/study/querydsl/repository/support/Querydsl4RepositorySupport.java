@@ -2,32 +2,57 @@ package study.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.ComparablePath;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
-import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 @Repository
+@Transactional(readOnly = true)
 public abstract class Querydsl4RepositorySupport {
     private final Class domainClass;
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private PathBuilder<?> entityPath;
+    private ComparablePath idPath;
+    private SortTranslator sortTranslator;
+    private QueryMetrics queryMetrics;
+    private ParallelCountExecutor parallelCountExecutor;
+    private BatchLoaderRegistry batchLoaderRegistry;
+    private PlatformTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private int bulkBatchSize;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
@@ -40,14 +65,46 @@ public abstract class Querydsl4RepositorySupport {
         SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
         EntityPath path = resolver.createPath(entityInformation.getJavaType());
         this.entityManager = entityManager;
-        this.querydsl = new Querydsl(entityManager, new PathBuilder<>(path.getType(), path.getMetadata()));
+        this.entityPath = new PathBuilder<>(path.getType(), path.getMetadata());
+        this.idPath = entityPath.getComparable(entityInformation.getIdAttribute().getName(), entityInformation.getIdType());
+        this.sortTranslator = SortTranslator.indexed(entityPath, idPath);
+        this.querydsl = new Querydsl(entityManager, entityPath);
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
+    @Autowired
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+    @Autowired
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+    @Autowired
+    public void setBatchLoaderRegistry(BatchLoaderRegistry batchLoaderRegistry) {
+        this.batchLoaderRegistry = batchLoaderRegistry;
+    }
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+    @Autowired
+    public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+    @Autowired
+    public void setBulkBatchSize(@Value("${querydsl.bulk.batch-size:1000}") int bulkBatchSize) {
+        this.bulkBatchSize = bulkBatchSize;
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(queryMetrics, "QueryMetrics must not be null!");
+        Assert.notNull(parallelCountExecutor, "ParallelCountExecutor must not be null!");
+        Assert.notNull(batchLoaderRegistry, "BatchLoaderRegistry must not be null!");
+        Assert.notNull(transactionManager, "TransactionManager must not be null!");
+        Assert.notNull(eventPublisher, "EventPublisher must not be null!");
     }
     protected JPAQueryFactory getQueryFactory() {
         return queryFactory;
@@ -58,24 +115,168 @@ public abstract class Querydsl4RepositorySupport {
     protected EntityManager getEntityManager() {
         return entityManager;
     }
+    protected QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+    /**
+     * Pageable 정렬을 허용할 키. 기본은 도메인 엔티티의 id 와 인덱스가 있는 속성이다.
+     * 조인한 엔티티 속성으로 정렬하려면 재정의한다.
+     */
+    protected SortTranslator getSortTranslator() {
+        return sortTranslator;
+    }
+    /**
+     * 허용된 정렬(+ id tiebreaker)과 offset, limit 을 적용한다.
+     */
+    protected <T> JPAQuery<T> paginate(Pageable pageable, JPAQuery<T> query) {
+        query.orderBy(getSortTranslator().translate(pageable.getSort()));
+        if (pageable.isUnpaged()) {
+            return query;
+        }
+        return query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+    }
+    /**
+     * 요청 단위로 공유되는 id 일괄 조회기. {@link BatchLoader}
+     */
+    protected <T, ID> BatchLoader<T, ID> batchLoader(Class<T> domainClass) {
+        return batchLoaderRegistry.loader(domainClass);
+    }
     protected <T> JPAQuery<T> select(Expression<T> expr) {
         return getQueryFactory().select(expr);
     }
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
         return getQueryFactory().selectFrom(from);
     }
+    /**
+     * content 쿼리에서 불필요한 join, order by, projection 을 걷어낸 count 쿼리를 만든다.
+     */
+    protected JPAQuery<Long> countQuery(JPAQuery<?> contentQuery) {
+        return CountQueryBuilder.build(getEntityManager(), contentQuery);
+    }
+    /**
+     * 숫자 결과를 Tuple 없이 primitive 배열로 받는다. {@link ColumnarResult}
+     */
+    protected ColumnarResult fetchColumns(JPAQuery<?> query, Expression<?>... columns) {
+        return ColumnarResult.fetch(query, columns);
+    }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
-        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+        JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+        jpaQuery.orderBy(getSortTranslator().translate(pageable.getSort()));
+        return queryMetrics.page(metricRepository(), metricMethod(), PredicateShape.of(jpaQuery.getMetadata().getWhere()),
+                () -> WindowCountPagination.fetchPage(getEntityManager(), jpaQuery, pageable));
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory());
-        return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
+        JPAQuery<T> jpaContentQuery = contentQuery.apply(getQueryFactory());
+        String repository = metricRepository();
+        String method = metricMethod();
+        String shape = PredicateShape.of(jpaContentQuery.getMetadata().getWhere());
+        JPAQuery<Long> countResult = countQuery(countQuery.apply(getQueryFactory()));
+        return parallelCountExecutor.getPage(
+                () -> queryMetrics.content(repository, method, shape,
+                        () -> paginate(pageable, jpaContentQuery).fetch()),
+                pageable,
+                () -> queryMetrics.count(repository, method, shape, countResult::fetchOne));
+    }
+    protected long bulkUpdate(Predicate where, Consumer<JPAUpdateClause> update, Consumer<BulkProgress> progress) {
+        return bulkUpdate(where, update, bulkBatchSize, progress);
+    }
+    /**
+     * where 에 해당하는 행을 id 순서로 batchSize 개씩 나눠서 update 한다.
+     * 트랜잭션 밖(또는 읽기 전용 트랜잭션)에서 호출하면 청크마다 새 트랜잭션으로 커밋해서 락을 오래 잡지 않는다.
+     * 쓰기 트랜잭션 안에서 호출하면 그 트랜잭션에 참여하고 커밋은 호출한 쪽이 한다.
+     * 변경된 엔티티는 영속성 컨텍스트와 2차 캐시에서 제거되므로 flush, clear 를 따로 할 필요가 없다.
+     * 청크마다 실행 직전에 {@link BulkChangeEvent} 를 발행한다.
+     * 벌크 update/delete 는 join 을 쓸 수 없으므로 where 는 root 엔티티 경로(또는 서브쿼리)만 사용해야 한다.
+     */
+    protected long bulkUpdate(Predicate where, Consumer<JPAUpdateClause> update, int batchSize, Consumer<BulkProgress> progress) {
+        return executeInChunks(where, batchSize, progress, false, chunk -> {
+            JPAUpdateClause clause = getQueryFactory().update(entityPath).where(chunk);
+            update.accept(clause);
+            return clause.execute();
+        });
+    }
+    protected long bulkDelete(Predicate where, Consumer<BulkProgress> progress) {
+        return bulkDelete(where, bulkBatchSize, progress);
+    }
+    protected long bulkDelete(Predicate where, int batchSize, Consumer<BulkProgress> progress) {
+        return executeInChunks(where, batchSize, progress, true,
+                chunk -> getQueryFactory().delete(entityPath).where(chunk).execute());
+    }
+    @SuppressWarnings("unchecked")
+    private long executeInChunks(Predicate where, int batchSize, Consumer<BulkProgress> progress, boolean delete,
+                                 ToLongFunction<Predicate> statement) {
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than zero!");
+        boolean joinCaller = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        EntityManager caller = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManager.getEntityManagerFactory());
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setPropagationBehavior(joinCaller
+                ? TransactionDefinition.PROPAGATION_REQUIRED
+                : TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        long totalRows = 0;
+        int chunk = 0;
+        Comparable lastId = null;
+        while (true) {
+            Comparable after = lastId;
+            // 청크 범위는 이번 트랜잭션 안에서 id 를 읽어서 정한다. 앞 청크에서 바뀐 행은 id 가 작으므로 다시 처리되지 않는다.
+            Chunk result = chunkTransaction.execute(status -> {
+                List<Comparable> ids = getQueryFactory()
+                        .select(idPath)
+                        .from(entityPath)
+                        .where(where, after == null ? null : idPath.gt(after))
+                        .orderBy(idPath.asc())
+                        .limit(batchSize)
+                        .fetch();
+                if (ids.isEmpty()) {
+                    return new Chunk(ids, 0);
+                }
+                eventPublisher.publishEvent(new BulkChangeEvent(domainClass, List.copyOf(ids), delete));
+                long rows = statement.applyAsLong(ExpressionUtils.allOf(where,
+                        idPath.between(ids.get(0), ids.get(ids.size() - 1))));
+                evict(entityManager, ids);
+                return new Chunk(ids, rows);
+            });
+            if (result.ids().isEmpty()) {
+                return totalRows;
+            }
+            if (!joinCaller && caller != null) {
+                evict(caller, result.ids());
+            }
+            totalRows += result.rows();
+            lastId = result.ids().get(result.ids().size() - 1);
+            progress.accept(new BulkProgress(++chunk, result.rows(), totalRows, lastId));
+            if (result.ids().size() < batchSize) {
+                return totalRows;
+            }
+        }
+    }
+    // 영속성 컨텍스트에 올라와 있는 엔티티만 detach 하고, 2차 캐시는 id 별로 비운다.
+    private void evict(EntityManager em, List<?> ids) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(domainClass);
+        for (Object id : ids) {
+            Object managed = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+            em.getEntityManagerFactory().getCache().evict(domainClass, id);
+        }
+    }
+    private record Chunk(List<Comparable> ids, long rows) {
+    }
+    private String metricRepository() {
+        return getClass().getSimpleName();
+    }
+    // 실제로 페이징을 요청한 하위 repository 의 메서드 이름
+    private String metricMethod() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(Querydsl4RepositorySupport.class.getName()))
+                .findFirst()
+                .map(StackWalker.StackFrame::getMethodName)
+                .orElse("unknown"));
     }
 }
-
@@ -0,0 +1,151 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.PathBuilder;
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.Table;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 요청의 정렬 키(Pageable sort)를 Querydsl OrderSpecifier 로 바꾼다.
+ * <ul>
+ *     <li>{@link #allow} 로 등록한 키만 허용하고, 나머지는 {@link UnsupportedSortException} 을 던진다.</li>
+ *     <li>등록할 때 컬럼이 @Id 이거나 @Table 인덱스의 첫 번째 컬럼인지 확인한다. 인덱스 없는 정렬은 애플리케이션 시작 시 실패한다.</li>
+ *     <li>페이지 경계가 흔들리지 않도록 항상 유일한 tiebreaker(id) 를 마지막 정렬 조건으로 붙인다.</li>
+ * </ul>
+ * 키 등록은 초기화할 때만 하고, 이후에는 읽기만 하므로 여러 스레드에서 공유해도 된다.
+ */
+public class SortTranslator {
+
+    private final ComparableExpressionBase<?> tiebreaker;
+    private final Map<String, ComparableExpressionBase<?>> properties = new LinkedHashMap<>();
+
+    private SortTranslator(ComparableExpressionBase<?> tiebreaker) {
+        this.tiebreaker = tiebreaker;
+    }
+
+    public static SortTranslator of(ComparableExpressionBase<?> tiebreaker) {
+        return new SortTranslator(tiebreaker);
+    }
+
+    /**
+     * 엔티티의 id 와, 인덱스의 첫 번째 컬럼인 기본 타입 속성을 속성 이름으로 허용한다.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static SortTranslator indexed(PathBuilder<?> entityPath, ComparableExpressionBase<?> idPath) {
+        SortTranslator translator = of(idPath);
+        ReflectionUtils.doWithFields(entityPath.getType(), field -> {
+            Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(field.getType());
+            if (Comparable.class.isAssignableFrom(type) && isIndexed(entityPath.getType(), field)) {
+                translator.allow(field.getName(), entityPath.getComparable(field.getName(), (Class) type));
+            }
+        }, field -> !Modifier.isStatic(field.getModifiers()));
+        return translator;
+    }
+
+    /**
+     * @param expression 엔티티 속성 경로 (조인한 엔티티의 속성도 가능. 예: team.name)
+     * @throws IllegalArgumentException 속성 컬럼으로 시작하는 인덱스가 없을 때
+     */
+    public SortTranslator allow(String property, ComparableExpressionBase<?> expression) {
+        if (!isIndexed(expression)) {
+            throw new IllegalArgumentException("No index starts with the column of " + expression
+                    + ", cannot allow sort property '" + property + "'");
+        }
+        properties.put(property, expression);
+        return this;
+    }
+
+    public Set<String> getProperties() {
+        return Collections.unmodifiableSet(properties.keySet());
+    }
+
+    /**
+     * @throws UnsupportedSortException 허용하지 않은 키가 있을 때
+     */
+    public OrderSpecifier<?>[] translate(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean unique = false;
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> expression = properties.get(order.getProperty());
+            if (expression == null) {
+                throw new UnsupportedSortException(order.getProperty(), properties.keySet());
+            }
+            orders.add(toOrderSpecifier(order, expression));
+            unique |= expression.equals(tiebreaker);
+        }
+        if (!unique) {
+            orders.add(tiebreaker.asc());
+        }
+        return orders.toArray(new OrderSpecifier<?>[0]);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static OrderSpecifier<?> toOrderSpecifier(Sort.Order order, Expression<?> expression) {
+        OrderSpecifier.NullHandling nullHandling = switch (order.getNullHandling()) {
+            case NULLS_FIRST -> OrderSpecifier.NullHandling.NullsFirst;
+            case NULLS_LAST -> OrderSpecifier.NullHandling.NullsLast;
+            case NATIVE -> OrderSpecifier.NullHandling.Default;
+        };
+        return new OrderSpecifier(order.isAscending() ? Order.ASC : Order.DESC, expression, nullHandling);
+    }
+
+    private static boolean isIndexed(Expression<?> expression) {
+        if (!(expression instanceof Path<?> path) || path.getMetadata().getParent() == null) {
+            return false;
+        }
+        Class<?> entity = path.getMetadata().getParent().getType();
+        Field field = ReflectionUtils.findField(entity, path.getMetadata().getName());
+        return field != null && isIndexed(entity, field);
+    }
+
+    private static boolean isIndexed(Class<?> entity, Field field) {
+        if (field.isAnnotationPresent(Id.class)) {
+            return true;
+        }
+        Table table = entity.getAnnotation(Table.class);
+        if (table == null) {
+            return false;
+        }
+        String column = columnName(field);
+        for (Index index : table.indexes()) {
+            String leading = index.columnList().split(",")[0].trim().split("\\s+")[0];
+            if (leading.equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 스프링 부트 기본 명명 전략(CamelCaseToUnderscoresNamingStrategy)과 같은 규칙
+    private static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column != null && StringUtils.hasText(column.name())) {
+            return column.name();
+        }
+        JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+        if (joinColumn != null && StringUtils.hasText(joinColumn.name())) {
+            return joinColumn.name();
+        }
+        return field.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
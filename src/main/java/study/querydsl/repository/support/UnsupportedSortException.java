@@ -0,0 +1,17 @@
+package study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Set;
+
+/**
+ * 허용되지 않은(인덱스로 정렬할 수 없는) 정렬 키. 요청 파라미터 오류이므로 400 으로 응답한다.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedSortException extends IllegalArgumentException {
+
+    public UnsupportedSortException(String property, Set<String> allowed) {
+        super("Unsupported sort property '" + property + "', allowed: " + allowed);
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberTemplate;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * content 와 total 을 한 번의 쿼리로 가져오는 페이징
+ * select ..., count(*) over() 로 limit 적용 전 전체 건수를 함께 조회한다.
+ * 윈도우 함수를 지원하지 않는 dialect 이거나 distinct 쿼리인 경우에만 content, count 쿼리를 따로 실행한다.
+ */
+public final class WindowCountPagination {
+
+    private static final NumberTemplate<Long> TOTAL = Expressions.numberTemplate(Long.class, "count(*) over()");
+    private static final Map<EntityManagerFactory, Boolean> WINDOW_SUPPORT = new ConcurrentHashMap<>();
+
+    private WindowCountPagination() {
+    }
+
+    public static <T> Page<T> fetchPage(EntityManager entityManager, JPAQuery<T> contentQuery, Pageable pageable) {
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(entityManager, contentQuery);
+        return fetchPage(entityManager, contentQuery, pageable, countQuery::fetchOne);
+    }
+
+    /**
+     * @param fallbackCount 윈도우 함수를 쓸 수 없거나, 요청한 페이지가 비어 있어 total 을 알 수 없을 때 사용할 count
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Page<T> fetchPage(EntityManager entityManager, JPAQuery<T> contentQuery, Pageable pageable,
+                                        LongSupplier fallbackCount) {
+        if (contentQuery.getMetadata().isDistinct() || !supportsWindowFunctions(entityManager)) {
+            List<T> content = paged(contentQuery, pageable).fetch();
+            return PageableExecutionUtils.getPage(content, pageable, fallbackCount);
+        }
+
+        Expression<T> projection = (Expression<T>) contentQuery.getMetadata().getProjection();
+        List<Tuple> rows = paged(contentQuery.clone(), pageable)
+                .select(projection, TOTAL)
+                .fetch();
+        if (rows.isEmpty()) {
+            return PageableExecutionUtils.getPage(Collections.emptyList(), pageable, fallbackCount);
+        }
+
+        List<T> content = rows.stream()
+                .map(row -> row.get(0, projection.getType()))
+                .toList();
+        Long total = rows.get(0).get(1, Long.class);
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static <T> JPAQuery<T> paged(JPAQuery<T> query, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return query;
+        }
+        return query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+    }
+
+    private static boolean supportsWindowFunctions(EntityManager entityManager) {
+        return WINDOW_SUPPORT.computeIfAbsent(entityManager.getEntityManagerFactory(), emf -> emf
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect()
+                .supportsWindowFunctions());
+    }
+}
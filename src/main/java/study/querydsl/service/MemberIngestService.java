@@ -0,0 +1,109 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberImportDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.isEmpty;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 대량 회원 등록
+ * chunkSize 건씩 트랜잭션을 나눠서 insert 하고, chunk 마다 flush/clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ * insert 는 hibernate.jdbc.batch_size, order_inserts 설정에 따라 JDBC batch 로 묶인다.
+ * 호출하는 쪽에 트랜잭션이 있으면 그 트랜잭션에 참여하므로 chunk 단위 커밋은 일어나지 않는다.
+ */
+@Service
+public class MemberIngestService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public MemberIngestService(EntityManager em, PlatformTransactionManager transactionManager,
+                               @Value("${member.ingest.chunk-size:1000}") int chunkSize) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public long ingest(Iterable<MemberImportDto> rows) {
+        Map<String, Long> teamIds = new HashMap<>();
+        List<MemberImportDto> chunk = new ArrayList<>(chunkSize);
+        long total = 0;
+        for (MemberImportDto row : rows) {
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                total += insertChunk(chunk, teamIds);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            total += insertChunk(chunk, teamIds);
+        }
+        return total;
+    }
+
+    private int insertChunk(List<MemberImportDto> chunk, Map<String, Long> teamIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            resolveTeams(chunk, teamIds);
+            for (MemberImportDto row : chunk) {
+                Member member = new Member(row.getUsername(), row.getAge());
+                // changeTeam 은 team.members 를 초기화하므로 연관관계 주인 쪽만 채운다.
+                if (!isEmpty(row.getTeamName())) {
+                    member.setTeam(em.getReference(Team.class, teamIds.get(row.getTeamName())));
+                }
+                em.persist(member);
+            }
+            em.flush();
+            em.clear();
+        });
+        return chunk.size();
+    }
+
+    private void resolveTeams(List<MemberImportDto> chunk, Map<String, Long> teamIds) {
+        Set<String> missing = new HashSet<>();
+        for (MemberImportDto row : chunk) {
+            if (!isEmpty(row.getTeamName()) && !teamIds.containsKey(row.getTeamName())) {
+                missing.add(row.getTeamName());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        List<Tuple> existing = queryFactory
+                .select(team.name, team.id)
+                .from(team)
+                .where(team.name.in(missing))
+                .orderBy(team.id.asc())
+                .fetch();
+        for (Tuple tuple : existing) {
+            teamIds.putIfAbsent(tuple.get(team.name), tuple.get(team.id));
+        }
+
+        for (String name : missing) {
+            if (!teamIds.containsKey(name)) {
+                Team newTeam = new Team(name);
+                em.persist(newTeam);
+                teamIds.put(name, newTeam.getId());
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import study.querydsl.dto.UserDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.FastProjections;
 
 import java.util.List;
 
@@ -596,6 +597,39 @@ public class QuerydslBasicTest {
         }
     }
 
+    @Test
+    void findDtoByFastProjections() {
+        // 리플렉션 대신 미리 만들어 둔 람다로 생성, 대입한다. 결과는 Projections 와 같아야 한다.
+        List<MemberDto> expected = queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch();
+
+        assertThat(queryFactory
+                .select(FastProjections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch()).isEqualTo(expected);
+        assertThat(queryFactory
+                .select(FastProjections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch()).isEqualTo(expected);
+        assertThat(queryFactory
+                .select(FastProjections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch()).isEqualTo(expected);
+
+        List<UserDto> users = queryFactory
+                .select(FastProjections.fields(UserDto.class, member.username.as("name"), member.age))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+        assertThat(users).extracting("name").contains("member1");
+    }
+
     @Test
     void findDtoByQueryProjection() {
         // compile 시점에 오류를 잡아낼 수 있다.
@@ -0,0 +1,45 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcConcurrencyGateTest {
+
+    JdbcConcurrencyGate gate = new JdbcConcurrencyGate(
+            new DriverManagerDataSource("jdbc:h2:mem:gate;DB_CLOSE_DELAY=-1", "sa", ""), 1, Duration.ofMillis(100));
+
+    @Test
+    void permitIsReturnedOnClose() throws Exception {
+        Connection connection = gate.getConnection();
+        assertThat(gate.getAvailablePermits()).isZero();
+
+        connection.close();
+        connection.close();
+        assertThat(gate.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void timeoutWhenAllPermitsInUse() throws Exception {
+        try (Connection connection = gate.getConnection()) {
+            assertThatThrownBy(gate::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        }
+        assertThat(gate.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectParallelCount() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(JdbcConcurrencyGateConfig.class)
+                .withPropertyValues("querydsl.jdbc.gate.enabled=true", "querydsl.count.parallel.enabled=true")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().rootCause().hasMessageContaining("querydsl.count.parallel.enabled"));
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BatchLoader;
+import study.querydsl.repository.support.BatchLoaderRegistry;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class NPlusOneDetectorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    NPlusOneDetector detector;
+
+    @Autowired
+    BatchLoaderRegistry batchLoaderRegistry;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void before() {
+        queryFactory = new JPAQueryFactory(em);
+        for (int i = 0; i < 4; i++) {
+            Team team = new Team("nPlusOneTeam" + i);
+            em.persist(team);
+            em.persist(new Member("nPlusOne" + i, 10 + i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void lazyTeamAccessFails() {
+        List<Member> members = queryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("nPlusOne"))
+                .fetch();
+
+        // 회원마다 team 을 지연 로딩하면 같은 모양의 select 가 팀 수만큼 실행된다.
+        Throwable thrown;
+        try (NPlusOneDetector.Scope scope = detector.open("lazyTeam", NPlusOneDetector.Mode.FAIL)) {
+            thrown = catchThrowable(() -> members.forEach(m -> m.getTeam().getName()));
+        }
+
+        assertThat(NestedExceptionUtils.getMostSpecificCause(thrown)).isInstanceOf(NPlusOneDetectedException.class);
+    }
+
+    @Test
+    void aggregateAndSingleIdBatchLookupsAreNotCounted() {
+        List<Team> teams = queryFactory
+                .selectFrom(team)
+                .where(team.name.startsWith("nPlusOneTeam"))
+                .fetch();
+        em.clear();
+
+        try (NPlusOneDetector.Scope scope = detector.open("notEntityLoad", NPlusOneDetector.Mode.FAIL)) {
+            for (Team t : teams) {
+                // 팀별 집계
+                queryFactory
+                        .select(member.age.min(), member.age.max())
+                        .from(member)
+                        .where(member.team.id.eq(t.getId()))
+                        .fetchOne();
+                // id 하나짜리 batch 조회
+                BatchLoader<Team, Long> loader = batchLoaderRegistry.loader(Team.class);
+                loader.load(t.getId());
+                loader.dispatch();
+            }
+
+            assertThat(scope.getStatementCount()).isEqualTo(teams.size() * 2);
+            assertThat(scope.getRepeatedSelects()).isEmpty();
+        }
+    }
+
+    @Test
+    void closingNestedScopeRestoresOuterScope() {
+        try (NPlusOneDetector.Scope outer = detector.open("outer")) {
+            try (NPlusOneDetector.Scope inner = detector.open("inner")) {
+                queryFactory.selectFrom(team).where(team.name.eq("nPlusOneTeam0")).fetch();
+                assertThat(inner.getStatementCount()).isEqualTo(1);
+            }
+
+            queryFactory.selectFrom(team).where(team.name.eq("nPlusOneTeam1")).fetch();
+            assertThat(outer.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void fetchJoinPasses() {
+        List<Member> members = queryFactory
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .where(member.username.startsWith("nPlusOne"))
+                .fetch();
+
+        assertThat(members).extracting(m -> m.getTeam().getName())
+                .containsExactlyInAnyOrder("nPlusOneTeam0", "nPlusOneTeam1", "nPlusOneTeam2", "nPlusOneTeam3");
+    }
+
+    @Test
+    void shapeIgnoresCommentsAndWhitespace() {
+        assertThat(NPlusOneDetector.shape("/* load Team */ select t1_0.team_id\n  from team t1_0 where t1_0.team_id=?"))
+                .isEqualTo("select t1_0.team_id from team t1_0 where t1_0.team_id=?");
+    }
+}
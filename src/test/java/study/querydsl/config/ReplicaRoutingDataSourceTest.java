@@ -0,0 +1,63 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 두 개의 in-memory H2 를 primary, replica 로 사용해서 라우팅을 확인한다.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routingDataSource;
+
+    @AfterEach
+    void after() throws Exception {
+        routingDataSource.close();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        DataSource dataSource = routingDataSource(null);
+
+        assertThat(currentUrl(dataSource, false)).contains("routing_primary");
+        assertThat(currentUrl(dataSource, true)).contains("routing_replica");
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        // 지연이 100초라고 응답하는 replica
+        DataSource dataSource = routingDataSource("select 100");
+        routingDataSource.checkReplicas();
+
+        assertThat(currentUrl(dataSource, true)).contains("routing_primary");
+    }
+
+    private DataSource routingDataSource(String lagQuery) {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1", "sa", "");
+        DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1", "sa", "");
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replica), lagQuery,
+                Duration.ofSeconds(5), Duration.ZERO);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private String currentUrl(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transactionTemplate.execute(status ->
+                jdbcTemplate.execute((Connection connection) -> connection.getMetaData().getURL()));
+    }
+}
@@ -0,0 +1,69 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * open-in-view 로 요청 동안 EntityManager 가 열려 있어도 트랜잭션마다 replica/primary 가 다시 정해지는지 확인한다.
+ * replica 는 in-memory H2 이고, 어느 DB 에 붙었는지는 H2 의 database() 로 구분한다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.datasource.replicas[0].url=jdbc:h2:mem:osiv_replica;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.replicas[0].username=sa",
+        "querydsl.datasource.check-interval=0s",
+        "spring.datasource.hikari.maximum-pool-size=3"
+})
+class ReplicaRoutingOpenInViewTest {
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    HikariDataSource primaryDataSource;
+
+    @Test
+    void primaryPoolUsesHikariProperties() {
+        assertThat(primaryDataSource.getMaximumPoolSize()).isEqualTo(3);
+        assertThat(primaryDataSource.getPoolName()).isEqualTo("primary");
+    }
+
+    @Test
+    void eachTransactionInRequestIsRouted() {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(emf);
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest());
+
+        interceptor.preHandle(request);
+        try {
+            assertThat(currentDatabase(true)).isEqualToIgnoringCase("osiv_replica");
+            assertThat(currentDatabase(false)).isEqualToIgnoringCase("querydsl");
+            assertThat(currentDatabase(true)).isEqualToIgnoringCase("osiv_replica");
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+    }
+
+    private String currentDatabase(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                (String) em.createNativeQuery("select database()").getSingleResult());
+    }
+}
@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void invalidSliceRequestIsBadRequest() throws Exception {
+        // base64 가 아닌 값, base64 지만 숫자가 아닌 값
+        mockMvc.perform(get("/v3/members").param("cursor", "not a cursor!"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v3/members").param("cursor", "YWJj"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v3/members").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
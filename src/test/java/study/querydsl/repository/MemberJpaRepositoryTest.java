@@ -1,21 +1,33 @@
 package study.querydsl.repository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryMetrics;
+import study.querydsl.repository.support.UnsupportedSortException;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QTeam.team;
 
 @SpringBootTest
 @Transactional
@@ -27,6 +39,12 @@ class MemberJpaRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    TeamNameResolver teamNameResolver;
+
     @Test
     void basicTest() {
         Member member = new Member("member1", 10);
@@ -67,6 +85,158 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    void searchSameShapeDifferentValues() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        // 같은 모양의 조건은 캐시된 쿼리를 재사용하고 값만 바뀌어야 한다.
+        MemberSearchCondition condition1 = new MemberSearchCondition();
+        condition1.setTeamName("teamA");
+        condition1.setAgeGoe(15);
+
+        MemberSearchCondition condition2 = new MemberSearchCondition();
+        condition2.setTeamName("teamB");
+        condition2.setAgeGoe(35);
+
+        assertThat(memberRepository.search(condition1)).extracting("username").containsExactly("member2");
+        assertThat(memberRepository.search(condition2)).extracting("username").containsExactly("member4");
+    }
+
+    @Test
+    void searchTeamNameAfterBulkUpdate() {
+        Team teamA = new Team("cacheTeamA");
+        Team teamB = new Team("cacheTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("cacheTeamB");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member2");
+
+        // 벌크 수정 후에는 팀 이름 -> id 캐시와 Team 2차 캐시가 무효화되어야 한다.
+        new JPAQueryFactory(em)
+                .update(team)
+                .set(team.name, "cacheTeamC")
+                .where(team.name.eq("cacheTeamB"))
+                .execute();
+        em.clear();
+
+        assertThat(memberRepository.search(condition)).isEmpty();
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isZero();
+
+        condition.setTeamName("cacheTeamC");
+        assertThat(memberRepository.search(condition)).extracting("teamName").containsExactly("cacheTeamC");
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void usernameSearchTooBroad() throws Exception {
+        MemberUsernameIndex index = new MemberUsernameIndex(em.getEntityManagerFactory(), 2);
+        try {
+            index.index(1L, "broadAlice");
+            index.index(2L, "broadAlicia");
+            index.index(3L, "broadAlina");
+
+            // like 로 전체를 읽는 대신 거절한다. FUZZY 는 점수 순 상위 max-hits 건만 돌려준다.
+            assertThatThrownBy(() -> index.search("broadAli", UsernameMatch.PREFIX))
+                    .isInstanceOf(UsernameSearchTooBroadException.class);
+            assertThatThrownBy(() -> index.search("Ali", UsernameMatch.CONTAINS))
+                    .isInstanceOf(UsernameSearchTooBroadException.class);
+            assertThat(index.search("broadAlic", UsernameMatch.FUZZY)).hasSize(2);
+            assertThat(index.search("broadAlici", UsernameMatch.PREFIX)).containsExactly(2L);
+        } finally {
+            index.destroy();
+        }
+    }
+
+    @Test
+    void searchAll() {
+        Team teamA = new Team("batchSearchTeamA");
+        Team teamB = new Team("batchSearchTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("batchSearch1", 10, teamA));
+        em.persist(new Member("batchSearch2", 20, teamA));
+        em.persist(new Member("batchSearch3", 30, teamB));
+        em.persist(new Member("batchSearch4", 40, teamB));
+
+        MemberSearchCondition byTeamA = new MemberSearchCondition();
+        byTeamA.setTeamName("batchSearchTeamA");
+        MemberSearchCondition byTeamBAge = new MemberSearchCondition();
+        byTeamBAge.setTeamName("batchSearchTeamB");
+        byTeamBAge.setAgeGoe(35);
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("batchSearch2");
+        MemberSearchCondition noTeam = new MemberSearchCondition();
+        noTeam.setTeamName("batchSearchTeamC");
+
+        List<MemberSearchCondition> conditions = List.of(byTeamA, byTeamBAge, byUsername, noTeam, byTeamA);
+        List<List<MemberTeamDto>> result = memberRepository.searchAll(conditions);
+
+        // 결과는 조건과 같은 순서이고, 조건별 결과는 search 를 따로 호출한 결과와 같아야 한다. (한 행이 여러 조건에 속할 수 있다)
+        assertThat(result).hasSize(5);
+        assertThat(result.get(0)).extracting("username").containsExactly("batchSearch1", "batchSearch2");
+        assertThat(result.get(1)).extracting("username").containsExactly("batchSearch4");
+        assertThat(result.get(2)).extracting("username").containsExactly("batchSearch2");
+        assertThat(result.get(3)).isEmpty();
+        assertThat(result.get(4)).isEqualTo(result.get(0));
+        for (int i = 0; i < conditions.size(); i++) {
+            assertThat(result.get(i)).extracting("memberId")
+                    .containsExactlyInAnyOrderElementsOf(memberRepository.search(conditions.get(i)).stream()
+                            .map(MemberTeamDto::getMemberId)
+                            .toList());
+        }
+    }
+
+    @Test
+    void searchMetrics() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+
+        Timer content = meterRegistry.find(QueryMetrics.QUERY_TIMER)
+                .tags("method", "searchPageComplex", "phase", "content", "shape", "ageGoe")
+                .timer();
+        Timer count = meterRegistry.find(QueryMetrics.QUERY_TIMER)
+                .tags("method", "searchPageComplex", "phase", "count", "shape", "ageGoe")
+                .timer();
+        assertThat(content).isNotNull();
+        assertThat(content.count()).isPositive();
+        assertThat(count).isNotNull();
+    }
+
+    @Test
+    void teamNameCacheMetrics() {
+        double hits = cacheCount(TeamNameResolver.QUERY_CACHE_REGION, "hit");
+
+        teamNameResolver.resolveIds("cacheMetricsTeam");
+        teamNameResolver.resolveIds("cacheMetricsTeam");
+
+        assertThat(cacheCount(TeamNameResolver.QUERY_CACHE_REGION, "hit")).isGreaterThan(hits);
+        assertThat(cacheCount(TeamNameResolver.QUERY_CACHE_REGION, "put")).isPositive();
+    }
+
+    private double cacheCount(String region, String result) {
+        return meterRegistry.find(TeamCacheMetrics.CACHE_COUNTER)
+                .tags("region", region, "result", result)
+                .functionCounter()
+                .count();
+    }
+
     @Test
     void searchPageSimple() {
         Team teamA = new Team("teamA");
@@ -92,6 +262,147 @@ class MemberJpaRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    @Test
+    void searchPageComplexCountCache() {
+        Team team = new Team("countCacheTeam");
+        em.persist(team);
+        em.persist(new Member("countCacheMember1", 10, team));
+        em.persist(new Member("countCacheMember2", 20, team));
+        em.persist(new Member("countCacheMember3", 30, team));
+
+        // 다른 테스트가 커밋한 회원과 섞이지 않도록 이 테스트의 팀으로만 센다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("countCacheTeam");
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        Page<MemberTeamDto> result1 = memberRepository.searchPageComplex(condition, pageRequest);
+        assertThat(result1.getTotalElements()).isEqualTo(3);
+
+        // 회원이 추가되면 캐시된 count 가 무효화되어야 한다.
+        em.persist(new Member("countCacheMember4", 40, team));
+
+        Page<MemberTeamDto> result2 = memberRepository.searchPageComplex(condition, pageRequest);
+        assertThat(result2.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    void searchPageSorted() {
+        Team teamA = new Team("sortTeamA");
+        Team teamB = new Team("sortTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("sortMember1", 10, teamA));
+        em.persist(new Member("sortMember2", 20, teamA));
+        em.persist(new Member("sortMember3", 20, teamB));
+        // username 인덱스는 insert 시점에 반영된다.
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(20);
+        condition.setUsername("sortMember");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+
+        Sort sort = Sort.by(Sort.Direction.DESC, "teamName").and(Sort.by("age"));
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10, sort)).getContent())
+                .extracting("username").containsExactly("sortMember3", "sortMember1", "sortMember2");
+        assertThat(memberRepository.searchPageSimple(condition, PageRequest.of(0, 2, sort)).getContent())
+                .extracting("username").containsExactly("sortMember3", "sortMember1");
+
+        // 인덱스가 없는(허용되지 않은) 정렬 키는 거부한다.
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10, Sort.by("teamId"))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+
+    @Test
+    void searchPageEstimated() {
+        Team team = new Team("estimateTeam");
+        em.persist(team);
+        em.persist(new Member("estimateMember1", 10, team));
+        em.persist(new Member("estimateMember2", 20, team));
+        em.persist(new Member("estimateMember3", 30, team));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("estimateTeam");
+        condition.setAgeGoe(20);
+
+        // 기준 건수보다 적으면 추정값이 아닌 정확한 값이 나온다.
+        Page<MemberTeamDto> result = memberRepository.searchPageEstimated(condition, PageRequest.of(0, 1));
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    void streamSearch() {
+        Team teamA = new Team("streamTeamA");
+        Team teamB = new Team("streamTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("streamMember1", 10, teamA));
+        em.persist(new Member("streamMember2", 20, teamA));
+        em.persist(new Member("streamMember3", 30, teamB));
+        em.persist(new Member("streamMember4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("streamTeamB");
+
+        try (Stream<MemberTeamDto> result = memberRepository.streamSearch(condition)) {
+            assertThat(result).extracting("username").containsExactly("streamMember3", "streamMember4");
+        }
+    }
+
+    @Test
+    void streamSearchKeepsPersistenceContext() {
+        Team team = new Team("streamTeam");
+        em.persist(team);
+        Member loaded = new Member("streamMember0", 0, team);
+        em.persist(loaded);
+        for (int i = 1; i <= 600; i++) {
+            em.persist(new Member("streamMember" + i, i, team));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("streamTeam");
+
+        // fetch size(500) 보다 많이 읽어도 호출한 쪽에서 관리하던 엔티티는 준영속이 되지 않는다.
+        try (Stream<MemberTeamDto> result = memberRepository.streamSearch(condition)) {
+            assertThat(result.count()).isEqualTo(601);
+        }
+        assertThat(em.contains(loaded)).isTrue();
+        assertThat(em.contains(team)).isTrue();
+    }
+
+    @Test
+    void searchSlice() {
+        Team teamA = new Team("sliceTeamA");
+        Team teamB = new Team("sliceTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("sliceMember1", 10, teamA);
+        Member member2 = new Member("sliceMember2", 20, teamA);
+        Member member3 = new Member("sliceMember3", 30, teamB);
+        Member member4 = new Member("sliceMember4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+        // 다른 테스트가 커밋한 회원과 섞이지 않도록 이름 prefix 로 거른다. (username 인덱스는 insert 시점에 반영)
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("sliceMember");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+
+        CursorSlice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("sliceMember1", "sliceMember2", "sliceMember3");
+        assertThat(first.isHasNext()).isTrue();
+
+        CursorSlice<MemberTeamDto> second = memberRepository.searchSlice(condition, MemberCursor.decode(first.getNextCursor()), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("sliceMember4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
     @Test
     void querydslPredicateExecutorTest() {
         Team teamA = new Team("teamA");
@@ -0,0 +1,99 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 비동기 조회는 별도 트랜잭션에서 실행되므로 테스트 트랜잭션 대신 커밋된 데이터로 확인하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberRepositoryAsyncTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transaction;
+
+    @BeforeEach
+    void before() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Team asyncTeamA = new Team("asyncTeamA");
+            Team asyncTeamB = new Team("asyncTeamB");
+            em.persist(asyncTeamA);
+            em.persist(asyncTeamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("asyncMember" + i, 10 + i, i % 2 == 0 ? asyncTeamA : asyncTeamB));
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transaction.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'asyncMember%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name like 'asyncTeam%'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    void searchPageAsyncFanOut() {
+        MemberSearchCondition conditionA = new MemberSearchCondition();
+        conditionA.setTeamName("asyncTeamA");
+        MemberSearchCondition conditionB = new MemberSearchCondition();
+        conditionB.setTeamName("asyncTeamB");
+        conditionB.setAgeGoe(15);
+
+        // 두 조회가 요청 스레드를 막지 않고 동시에 실행된다.
+        CompletableFuture<Page<MemberTeamDto>> pageA = memberRepository.searchPageAsync(conditionA, PageRequest.of(0, 3));
+        CompletableFuture<List<MemberTeamDto>> listB = memberRepository.searchAsync(conditionB);
+
+        assertThat(pageA.join().getTotalElements()).isEqualTo(5);
+        assertThat(pageA.join().getContent()).hasSize(3);
+        assertThat(listB.join()).extracting("username")
+                .containsExactlyInAnyOrder("asyncMember5", "asyncMember7", "asyncMember9");
+    }
+
+    @Test
+    void searchFlux() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("asyncTeamA");
+
+        List<String> usernames = memberRepository.searchFlux(condition)
+                .map(MemberTeamDto::getUsername)
+                .collectList()
+                .block();
+        assertThat(usernames).containsExactly("asyncMember0", "asyncMember2", "asyncMember4", "asyncMember6", "asyncMember8");
+
+        // 앞의 일부만 받고 취소해도 EntityManager 와 커넥션이 정리되어 다음 조회가 가능해야 한다.
+        assertThat(memberRepository.searchFlux(condition).take(2).collectList().block()).hasSize(2);
+        assertThat(memberRepository.searchFlux(condition).count().block()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.NPlusOneDetector;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchQueryPlanTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    NPlusOneDetector detector;
+
+    @BeforeEach
+    void before() {
+        Team team = new Team("planTeam");
+        em.persist(team);
+        em.persist(new Member("planMember", 20, team));
+        em.flush();
+    }
+
+    @Test
+    void searchShapesUseIndexes() {
+        for (MemberSearchCondition condition : conditions()) {
+            String shape = MemberSearchShape.of(condition).tag();
+            Set<String> statements;
+            try (NPlusOneDetector.Scope scope = detector.open("plan")) {
+                memberRepository.search(condition);
+                // 두 번째 페이지를 요청해야 content 건수만으로 total 을 정하지 않고 count 쿼리까지 실행된다.
+                memberRepository.searchPageComplex(condition, PageRequest.of(1, 1));
+                memberRepository.searchPageSimple(condition, PageRequest.of(1, 1));
+                statements = scope.getStatements();
+            }
+
+            assertThat(statements).as(shape).anyMatch(sql -> sql.regionMatches(true, 0, "select count(", 0, 13));
+            for (String sql : statements) {
+                if (!sql.regionMatches(true, 0, "select", 0, 6)) {
+                    continue;
+                }
+                String plan = explain(sql);
+                // H2 는 인덱스 없이 전체를 읽을 때 실행 계획에 tableScan 을 표시한다.
+                assertThat(plan).as("%s%n%s", shape, plan).doesNotContainIgnoringCase("tableScan");
+            }
+        }
+    }
+
+    /**
+     * 조건이 하나도 없는 경우(전체 조회)를 제외한 모든 조건 조합. username 이 있으면 UsernameMatch 마다 하나씩 만든다.
+     */
+    private List<MemberSearchCondition> conditions() {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        for (int mask = 1; mask < 16; mask++) {
+            UsernameMatch[] matches = (mask & 1) != 0 ? UsernameMatch.values() : new UsernameMatch[]{null};
+            for (UsernameMatch match : matches) {
+                MemberSearchCondition condition = new MemberSearchCondition();
+                if ((mask & 1) != 0) {
+                    condition.setUsername("planMember");
+                    condition.setUsernameMatch(match);
+                }
+                if ((mask & 2) != 0) {
+                    condition.setTeamName("planTeam");
+                }
+                if ((mask & 4) != 0) {
+                    condition.setAgeGoe(10);
+                }
+                if ((mask & 8) != 0) {
+                    condition.setAgeLoe(30);
+                }
+                conditions.add(condition);
+            }
+        }
+        return conditions;
+    }
+
+    private String explain(String sql) {
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                // 계획만 보면 되므로 파라미터는 형식만 맞는 값으로 채운다. (H2 가 컬럼 타입으로 변환)
+                int count = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= count; i++) {
+                    statement.setString(i, "1");
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getString(1);
+                }
+            }
+        });
+    }
+}
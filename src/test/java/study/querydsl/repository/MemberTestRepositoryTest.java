@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkProgress;
+import study.querydsl.repository.support.ColumnarResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    Member member1;
+
+    @BeforeEach
+    void before() {
+        // QuerydslBasicTest 가 커밋한 teamA, teamB 회원과 섞이지 않도록 별도 팀을 사용한다.
+        Team teamA = new Team("bulkTeamA");
+        Team teamB = new Team("bulkTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamA));
+    }
+
+    @Test
+    void bulkAddAge() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+
+        List<BulkProgress> progress = new ArrayList<>();
+        long rows = memberTestRepository.bulkAddAge(condition, 1, 2, progress::add);
+
+        assertThat(rows).isEqualTo(4);
+        assertThat(progress).extracting(BulkProgress::chunkRows).containsExactly(2L, 2L);
+        assertThat(progress).extracting(BulkProgress::totalRows).containsExactly(2L, 4L);
+
+        // flush, clear 없이도 영속성 컨텍스트에 남아 있던 이전 값이 보이지 않아야 한다.
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(11);
+    }
+
+    @Test
+    void bulkDelete() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+        condition.setAgeGoe(20);
+        // count 를 캐시에 올려 둔다.
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(3);
+
+        long rows = memberTestRepository.bulkDelete(condition, 2, progress -> {
+        });
+
+        assertThat(rows).isEqualTo(3);
+        // 벌크 연산도 BulkChangeEvent 로 count 캐시를 비운다.
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)).getTotalElements()).isZero();
+        assertThat(em.createQuery("select m from Member m where m.team.name like 'bulkTeam%'", Member.class).getResultList())
+                .extracting("username").containsExactlyInAnyOrder("member1", "member4");
+    }
+
+    @Test
+    void teamAgeStatistics() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+
+        ColumnarResult result = memberTestRepository.teamAgeStatistics(condition);
+
+        assertThat(result.size()).isEqualTo(1);
+        assertThat(result.getObjects(team.name)).containsExactly("bulkTeamA");
+        assertThat(result.getLongs(member.count())).containsExactly(4L);
+        assertThat(result.getDoubles(member.age.avg())).containsExactly(27.5);
+    }
+
+    @Test
+    void fetchColumns() {
+        ColumnarResult result = ColumnarResult.fetch(new JPAQueryFactory(em)
+                        .selectFrom(member)
+                        .where(member.team.name.eq("bulkTeamA"))
+                        .orderBy(member.age.asc()),
+                member.age);
+
+        assertThat(result.getInts(member.age)).containsExactly(10, 20, 30, 50);
+    }
+}
@@ -0,0 +1,149 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 인덱스는 커밋된 변경만 반영하므로 테스트 트랜잭션 대신 직접 커밋하고 지운다.
+ */
+@SpringBootTest
+class MemberUsernameIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    MemberUsernameIndex index;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transaction;
+    Long teamId;
+
+    @BeforeEach
+    void before() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Team team = new Team("indexTeam");
+            em.persist(team);
+            em.persist(new Member("indexAlice", 10, team));
+            em.persist(new Member("indexAlicia", 20, team));
+            em.persist(new Member("indexBob", 30, team));
+            teamId = team.getId();
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transaction.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.team.id = :teamId", Member.class)
+                    .setParameter("teamId", teamId)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.remove(em.find(Team.class, teamId));
+        });
+        transaction.executeWithoutResult(status -> em
+                .createQuery("delete from TeamStats s where s.teamId = :teamId")
+                .setParameter("teamId", teamId)
+                .executeUpdate());
+    }
+
+    @Test
+    void searchUsernameMatch() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("INDEXALI");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("indexAlice", "indexAlicia");
+
+        condition.setUsername("xBo");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("indexBob");
+
+        condition.setUsername("indexAlise");
+        condition.setUsernameMatch(UsernameMatch.FUZZY);
+        assertThat(memberRepository.search(condition)).extracting("username").contains("indexAlice");
+
+        // 커밋된 이름 변경은 인덱스에도 반영된다.
+        transaction.executeWithoutResult(status -> findMember("indexBob").setUsername("indexCarol"));
+
+        condition.setUsername("xBo");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberRepository.search(condition)).isEmpty();
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isZero();
+
+        condition.setUsername("indexCar");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("indexCarol");
+    }
+
+    @Test
+    void rolledBackChangeIsNotIndexed() {
+        transaction.executeWithoutResult(status -> {
+            em.persist(new Member("indexDave", 40, em.find(Team.class, teamId)));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(index.search("indexDa", UsernameMatch.PREFIX)).isEmpty();
+    }
+
+    @Test
+    void bulkDeleteIsIndexed() {
+        Long bobId = transaction.execute(status -> findMember("indexBob").getId());
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("indexBob");
+
+        memberTestRepository.bulkDelete(condition, 10, progress -> {
+        });
+
+        assertThat(index.search("indexBob", UsernameMatch.EXACT)).doesNotContain(bobId);
+    }
+
+    @Test
+    void staleIndexIsRecheckedAndRebuilt() {
+        // 직접 실행한 JPQL 벌크 연산은 리스너를 거치지 않으므로 인덱스에는 예전 이름이 남는다.
+        transaction.executeWithoutResult(status -> em
+                .createQuery("update Member m set m.username = 'indexZed' where m.username = 'indexAlice'")
+                .executeUpdate());
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("indexAlica");
+        condition.setUsernameMatch(UsernameMatch.FUZZY);
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .contains("indexAlicia")
+                .doesNotContain("indexZed");
+
+        index.rebuild();
+
+        condition.setUsername("indexZe");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("indexZed");
+    }
+
+    private Member findMember(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.NPlusOneDetector;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BatchLoader;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Autowired
+    NPlusOneDetector detector;
+
+    @Test
+    void findPageWithMembers() {
+        // 다른 테스트가 커밋한 팀보다 이름순으로 앞에 오도록 zz 로 시작한다.
+        long before = em.createQuery("select count(t) from Team t", Long.class).getSingleResult();
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("zzTeam" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i + "a", 10, team));
+            em.persist(new Member("member" + i + "b", 20, team));
+        }
+        em.flush();
+        em.clear();
+
+        Page<Team> page = teamQueryRepository.findPageWithMembers(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name")));
+
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertThat(page.getTotalElements()).isEqualTo(before + 3);
+        assertThat(page.getContent()).extracting("name").containsExactly("zzTeam2", "zzTeam1");
+        assertThat(page.getContent()).allSatisfy(team -> {
+            assertThat(util.isLoaded(team, "members")).isTrue();
+            assertThat(team.getMembers()).hasSize(2);
+        });
+    }
+
+    @Test
+    void teamLoaderBatchesLookups() {
+        for (int i = 0; i < 4; i++) {
+            Team team = new Team("loaderTeam" + i);
+            em.persist(team);
+            em.persist(new Member("loaderMember" + i, 10, team));
+        }
+        em.flush();
+        em.clear();
+
+        List<Member> members = em.createQuery("select m from Member m where m.username like 'loaderMember%'", Member.class)
+                .getResultList();
+
+        try (NPlusOneDetector.Scope scope = detector.open("teamLoader")) {
+            BatchLoader<Team, Long> loader = teamQueryRepository.teamLoader();
+            Map<Long, Team> teams = loader.resolve(members, Member::getTeam);
+
+            // 팀 프록시 초기화 쿼리 대신 in 조회 한 번
+            assertThat(teams).hasSize(4);
+            assertThat(members).extracting(m -> m.getTeam().getName())
+                    .containsExactlyInAnyOrder("loaderTeam0", "loaderTeam1", "loaderTeam2", "loaderTeam3");
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+
+            // 같은 요청의 loader 는 캐시를 공유하므로 다시 조회하지 않는다.
+            Long teamId = members.get(0).getTeam().getId();
+            CompletableFuture<Team> cached = teamQueryRepository.teamLoader().load(teamId);
+            CompletableFuture<Team> missing = teamQueryRepository.teamLoader().load(-1L);
+            teamQueryRepository.teamLoader().dispatch();
+            assertThat(cached.join().getId()).isEqualTo(teamId);
+            assertThat(missing.join()).isNull();
+            assertThat(scope.getStatementCount()).isEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 통계는 커밋 직전에 반영되므로 테스트 트랜잭션 대신 직접 커밋하고 지운다.
+ */
+@SpringBootTest
+class TeamStatsTest {
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Autowired
+    TeamStatsReconciler reconciler;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transaction;
+    Long teamAId;
+    Long teamBId;
+
+    @BeforeEach
+    void before() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Team teamA = new Team("statsTeamA");
+            Team teamB = new Team("statsTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("statsMember1", 10, teamA));
+            em.persist(new Member("statsMember2", 20, teamA));
+            em.persist(new Member("statsMember3", 30, teamB));
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transaction.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'statsMember%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name like 'statsTeam%'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+        // 회원 삭제도 커밋 직전에 통계에 반영되므로 통계 행은 그 다음에 지운다.
+        transaction.executeWithoutResult(status -> em
+                .createQuery("delete from TeamStats s where s.teamId in :ids")
+                .setParameter("ids", List.of(teamAId, teamBId))
+                .executeUpdate());
+    }
+
+    @Test
+    void maintainedIncrementally() {
+        assertStats(teamAId, 2, 30, 10, 20);
+        assertStats(teamBId, 1, 30, 30, 30);
+
+        // 최소 나이 회원 삭제, 최대 나이 회원 팀 이동
+        transaction.executeWithoutResult(status -> {
+            em.remove(findMember("statsMember1"));
+            findMember("statsMember2").changeTeam(em.find(Team.class, teamBId));
+        });
+        assertStats(teamAId, 0, 0, null, null);
+        assertStats(teamBId, 2, 50, 20, 30);
+
+        // 나이 변경
+        transaction.executeWithoutResult(status -> findMember("statsMember3").setAge(5));
+        assertStats(teamBId, 2, 25, 5, 20);
+
+        assertThat(teamQueryRepository.findTeamStats())
+                .filteredOn(dto -> dto.getTeamName().startsWith("statsTeam"))
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMemberCount, TeamStatsDto::getAgeAvg)
+                .containsExactly(
+                        tuple("statsTeamA", 0L, null),
+                        tuple("statsTeamB", 2L, 12.5));
+    }
+
+    @Test
+    void removeUsesLoadedState() {
+        // 삭제 전에 바꾼 나이/팀은 update 되지 않으므로, 통계에서는 DB 에 있던 값(30, teamB)을 빼야 한다.
+        transaction.executeWithoutResult(status -> {
+            Member member = findMember("statsMember3");
+            member.setAge(99);
+            member.changeTeam(em.find(Team.class, teamAId));
+            em.remove(member);
+        });
+        assertStats(teamAId, 2, 30, 10, 20);
+        assertStats(teamBId, 0, 0, null, null);
+    }
+
+    @Test
+    void memberLoadedBeforeTransaction() {
+        // open-in-view 처럼 트랜잭션 전에 읽은 회원의 변경은 커밋 flush 에서야 @PreUpdate 가 호출된다.
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(emf);
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest());
+
+        interceptor.preHandle(request);
+        try {
+            Member member = findMember("statsMember3");
+            transaction.executeWithoutResult(status -> member.setAge(40));
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+        assertStats(teamBId, 1, 40, 40, 40);
+    }
+
+    @Test
+    void bulkChangesAreRecounted() {
+        MemberSearchCondition byTeamA = new MemberSearchCondition();
+        byTeamA.setTeamName("statsTeamA");
+        memberTestRepository.bulkAddAge(byTeamA, 1, 10, progress -> {
+        });
+        assertStats(teamAId, 2, 32, 11, 21);
+
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("statsMember3");
+        memberTestRepository.bulkDelete(byUsername, 10, progress -> {
+        });
+        assertStats(teamBId, 0, 0, null, null);
+    }
+
+    @Test
+    void reconcileFixesDrift() {
+        // 벌크 연산은 엔티티 리스너를 거치지 않아 통계가 어긋난다.
+        transaction.executeWithoutResult(status -> em
+                .createQuery("update Member m set m.age = m.age + 1 where m.username like 'statsMember%'")
+                .executeUpdate());
+        assertStats(teamAId, 2, 30, 10, 20);
+
+        assertThat(reconciler.reconcile()).isGreaterThanOrEqualTo(2);
+        assertStats(teamAId, 2, 32, 11, 21);
+        assertStats(teamBId, 1, 31, 31, 31);
+    }
+
+    private Member findMember(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+
+    private void assertStats(Long teamId, long count, long ageSum, Integer ageMin, Integer ageMax) {
+        TeamStats stats = transaction.execute(status -> em.find(TeamStats.class, teamId));
+        assertThat(stats).isNotNull();
+        assertThat(stats.getMemberCount()).isEqualTo(count);
+        assertThat(stats.getAgeSum()).isEqualTo(ageSum);
+        assertThat(stats.getAgeMin()).isEqualTo(ageMin);
+        assertThat(stats.getAgeMax()).isEqualTo(ageMax);
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class CountQueryBuilderTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void before() {
+        queryFactory = new JPAQueryFactory(em);
+        // QuerydslBasicTest 가 커밋한 teamA, teamB 회원과 섞이지 않도록 별도 이름을 사용하고 그 이름으로만 센다.
+        Team teamA = new Team("countTeamA");
+        Team teamB = new Team("countTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("countMember1", 10, teamA));
+        em.persist(new Member("countMember2", 20, teamA));
+        em.persist(new Member("countMember3", 30, teamB));
+        em.persist(new Member("countMember4", 40, teamB));
+    }
+
+    @Test
+    void dropUnreferencedLeftJoin() {
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith("countMember"), member.age.goe(20))
+                .orderBy(member.username.desc());
+
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(em, contentQuery);
+
+        // where 절에서 team 을 참조하지 않으므로 join 과 order by 가 빠진다.
+        assertThat(countQuery.toString()).doesNotContain("join").doesNotContain("order by");
+        assertThat(countQuery.fetchOne()).isEqualTo(3);
+    }
+
+    @Test
+    void keepReferencedLeftJoin() {
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("countTeamB"));
+
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(em, contentQuery);
+
+        assertThat(countQuery.toString()).contains("left join");
+        assertThat(countQuery.fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    void dropFetchJoin() {
+        JPAQuery<Team> contentQuery = queryFactory
+                .selectFrom(team)
+                .join(team.members, member).fetchJoin()
+                .where(team.name.startsWith("countTeam"), member.age.gt(10))
+                .distinct();
+
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(em, contentQuery);
+
+        assertThat(countQuery.toString()).doesNotContain("fetch");
+        assertThat(countQuery.fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    void keepJoinReferencedByDistinctProjection() {
+        JPAQuery<String> contentQuery = queryFactory
+                .select(team.name)
+                .distinct()
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith("countMember"));
+
+        JPAQuery<Long> countQuery = CountQueryBuilder.build(em, contentQuery);
+
+        // where 절은 team 을 참조하지 않지만 count(distinct team.name) 이 참조하므로 join 이 남아야 한다.
+        assertThat(countQuery.toString()).contains("left join");
+        assertThat(countQuery.fetchOne()).isEqualTo(2);
+    }
+}
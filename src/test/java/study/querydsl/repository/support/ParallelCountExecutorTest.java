@@ -0,0 +1,66 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.count.parallel.enabled=true")
+class ParallelCountExecutorTest {
+
+    @Autowired
+    ParallelCountExecutor parallelCountExecutor;
+
+    @Test
+    void countRunsInSeparateReadOnlyTransaction() {
+        AtomicReference<String> countThread = new AtomicReference<>();
+        AtomicBoolean readOnly = new AtomicBoolean();
+
+        Page<String> page = parallelCountExecutor.getPage(() -> List.of("a", "b"), PageRequest.of(1, 2), () -> {
+            countThread.set(Thread.currentThread().getName());
+            readOnly.set(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            return 10;
+        });
+
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(countThread.get()).startsWith("parallel-count-");
+        assertThat(readOnly).isTrue();
+    }
+
+    @Test
+    void countIsCancelledWhenContentIsEnough() throws Exception {
+        // 첫 페이지인데 content 가 페이지 크기보다 적으면 total 은 content 크기다.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Page<String> page = parallelCountExecutor.getPage(() -> {
+            try {
+                started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of("a");
+        }, PageRequest.of(0, 10), () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 100;
+        });
+        release.countDown();
+
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+}
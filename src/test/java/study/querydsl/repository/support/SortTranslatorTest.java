@@ -0,0 +1,50 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class SortTranslatorTest {
+
+    SortTranslator translator = SortTranslator.of(member.id)
+            .allow("username", member.username)
+            .allow("teamName", team.name);
+
+    @Test
+    void appendsTiebreaker() {
+        OrderSpecifier<?>[] orders = translator.translate(Sort.by(Sort.Direction.DESC, "teamName").and(Sort.by("username")));
+
+        assertThat(orders).containsExactly(team.name.desc(), member.username.asc(), member.id.asc());
+        assertThat(translator.translate(Sort.unsorted())).containsExactly(member.id.asc());
+    }
+
+    @Test
+    void rejectsUnknownProperty() {
+        assertThatThrownBy(() -> translator.translate(Sort.by("age")))
+                .isInstanceOf(UnsupportedSortException.class)
+                .hasMessageContaining("age");
+    }
+
+    @Test
+    void rejectsUnindexedColumn() {
+        PathBuilder<Team> path = new PathBuilder<>(Team.class, "team");
+        assertThatThrownBy(() -> SortTranslator.of(team.id).allow("missing", path.getComparable("missing", String.class)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void indexedProperties() {
+        PathBuilder<Member> path = new PathBuilder<>(Member.class, "member");
+        SortTranslator indexed = SortTranslator.indexed(path, path.getComparable("id", Long.class));
+
+        assertThat(indexed.getProperties()).containsExactlyInAnyOrder("id", "username", "age");
+    }
+}
@@ -0,0 +1,57 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberImportDto;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class MemberIngestServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberIngestService memberIngestService;
+
+    @Test
+    void ingest() {
+        // chunk 크기(1000)를 넘겨서 여러 chunk 에 걸쳐 같은 팀을 재사용하는지 확인
+        List<MemberImportDto> rows = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            rows.add(new MemberImportDto("ingestMember" + i, i % 50, i % 2 == 0 ? "ingestTeamA" : "ingestTeamB"));
+        }
+        rows.add(new MemberImportDto("ingestNoTeam", 10, null));
+
+        long count = memberIngestService.ingest(rows);
+
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        assertThat(count).isEqualTo(2_501);
+        // 다른 테스트가 커밋한 팀/회원과 섞이지 않도록 이 테스트에서 쓰는 이름으로만 센다.
+        assertThat(queryFactory
+                .selectFrom(team)
+                .where(team.name.in("ingestTeamA", "ingestTeamB"))
+                .fetch()).extracting("name").containsExactlyInAnyOrder("ingestTeamA", "ingestTeamB");
+        assertThat(queryFactory
+                .select(member.count())
+                .from(member)
+                .join(member.team, team)
+                .where(team.name.eq("ingestTeamA"))
+                .fetchOne()).isEqualTo(1_250);
+
+        Member noTeam = queryFactory.selectFrom(member).where(member.username.eq("ingestNoTeam")).fetchOne();
+        assertThat(noTeam.getTeam()).isNull();
+    }
+}